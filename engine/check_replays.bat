@@ -0,0 +1,4 @@
+rem re-plays the recorded games in test\replays with the engine built by compile.bat, and fails if any of them
+rem plays out differently (see check_replays.sh)
+
+java -cp bin;lib/java-json.jar;lib/guava-23.0.jar com.theaigames.game.warlight2.ReplaySimulator test/replays/*.json test/replays/*.wl2r
\ No newline at end of file
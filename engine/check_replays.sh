@@ -0,0 +1,7 @@
+#!/bin/bash
+
+# re-plays the recorded games in test/replays with the engine built by compile.sh, and fails if any of them
+# plays out differently; a replay is recorded with e.g.
+# `java -cp "bin:lib/java-json.jar:lib/guava-23.0.jar" com.theaigames.game.warlight2.Warlight2 <id> <map seed> <game seed> test/replays/<map> test/replays/<settings> builtin:greedy builtin:bonus "" test/replays/<id>.wl2r`
+
+java -cp "bin:lib/java-json.jar:lib/guava-23.0.jar" com.theaigames.game.warlight2.ReplaySimulator test/replays/*.json test/replays/*.wl2r
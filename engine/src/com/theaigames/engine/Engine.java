@@ -19,8 +19,12 @@ package com.theaigames.engine;
 
 import com.theaigames.engine.io.BotRunner;
 import com.theaigames.engine.io.IOPlayer;
+import java.io.File;
 import java.io.IOException;
+import java.lang.ProcessBuilder.Redirect;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.StringTokenizer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -34,6 +38,12 @@ import java.util.logging.Logger;
  */
 public class Engine implements BotRunner {
 
+    // What to do with bot stderr output:
+    //   CAPTURE : read by the engine (a thread per bot), the tail is kept in memory
+    //   FILE    : redirected by the OS directly to a file in the bot log directory
+    //   DISCARD : redirected by the OS to the null device
+    public enum BotStderrMode { CAPTURE, FILE, DISCARD }
+
     // Boolean representing current engine running state
     private boolean isRunning;
 
@@ -46,11 +56,34 @@ public class Engine implements BotRunner {
     // logger used to log all messages sent to bots and received from bots - for debugging purposes
     private Logger botCommunicationLogger;
 
+    // how much of each bot log is kept in memory, and where to write full logs to (if anywhere)
+    private int botLogSize;
+    private File botLogDirectory;
+    private BotStderrMode botStderrMode;
+
     // Engine constructor
     public Engine(Logger botCommunicationLogger) {
         this.isRunning = false;
         this.players = new ArrayList<IOPlayer>();
         this.botCommunicationLogger = botCommunicationLogger;
+        this.botLogSize = IOPlayer.DEFAULT_LOG_SIZE;
+        this.botLogDirectory = null;
+        this.botStderrMode = BotStderrMode.CAPTURE;
+    }
+
+    // Sets how many most recent characters of each bot log are kept in memory
+    public void setBotLogSize(int botLogSize) {
+        this.botLogSize = botLogSize;
+    }
+
+    // Sets the directory full bot logs are written to (null to only keep log tails in memory)
+    public void setBotLogDirectory(File botLogDirectory) {
+        this.botLogDirectory = botLogDirectory;
+    }
+
+    // Sets what to do with bot stderr output (FILE mode requires a bot log directory)
+    public void setBotStderrMode(BotStderrMode botStderrMode) {
+        this.botStderrMode = botStderrMode;
     }
 
     // Sets game logic
@@ -68,10 +101,14 @@ public class Engine implements BotRunner {
     public void addPlayer(String command, String playerName) throws IOException {
 
         // Create new process
-        Process process = Runtime.getRuntime().exec(command);
+        Redirect stderrRedirect = getStderrRedirect(playerName);
+        Process process = new ProcessBuilder(splitCommand(command))
+                .redirectError(stderrRedirect)
+                .start();
 
         // Attach IO to process
-        IOPlayer player = new IOPlayer(process, playerName, botCommunicationLogger);
+        IOPlayer player = new IOPlayer(process, playerName, botCommunicationLogger, botLogSize, botLogDirectory,
+                stderrRedirect);
 
         // Add player
         this.players.add(player);
@@ -80,6 +117,34 @@ public class Engine implements BotRunner {
         player.run();
     }
 
+    // Splits a command into arguments the same way Runtime.exec() does
+    private List<String> splitCommand(String command) {
+        List<String> arguments = new ArrayList<String>();
+        StringTokenizer tokenizer = new StringTokenizer(command);
+        while (tokenizer.hasMoreTokens()) {
+            arguments.add(tokenizer.nextToken());
+        }
+        if (arguments.isEmpty()) {
+            throw new IllegalArgumentException("Empty bot command");
+        }
+        return arguments;
+    }
+
+    private Redirect getStderrRedirect(String playerName) {
+        switch (this.botStderrMode) {
+            case FILE:
+                if (this.botLogDirectory == null) {
+                    throw new IllegalStateException("Bot stderr can only be redirected to a file if a bot log directory is set");
+                }
+                return Redirect.to(IOPlayer.getLogFile(this.botLogDirectory, playerName, "stderr"));
+            case DISCARD:
+                return Redirect.DISCARD;
+            case CAPTURE:
+            default:
+                return Redirect.PIPE;
+        }
+    }
+
     @Override
     // Method to start engine
     public void start() throws Exception {
@@ -0,0 +1,173 @@
+// Copyright 2015 theaigames.com (developers@theaigames.com)
+
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+
+//        http://www.apache.org/licenses/LICENSE-2.0
+
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+//    For the full copyright and license information, please view the LICENSE
+//    file that was distributed with this source code.
+
+package com.theaigames.engine.io;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * BoundedTextLog class
+ *
+ * Keeps (at least) the last maxLength characters of a text log in memory, and optionally
+ * streams the log to a file, up to a maximum file size. Memory used never exceeds twice
+ * maxLength characters.
+ */
+public class BoundedTextLog {
+
+    private static final String TRUNCATED_LINE = "[truncated]\n";
+
+    private final int maxLength;
+    private final StringBuilder buffer;
+    private boolean bufferStartsMidLine;  // true if text before the start of the buffer was discarded mid-line
+    private Writer spillWriter;
+    private final long maxSpillBytes;
+    private long spillBytes;
+
+    /**
+     * @param maxLength : number of most recent characters to keep in memory
+     * @param spillFile : file to write the full log to, or null to only keep the tail in memory
+     */
+    public BoundedTextLog(int maxLength, File spillFile) {
+        this(maxLength, spillFile, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param maxLength     : number of most recent characters to keep in memory
+     * @param spillFile     : file to write the log to, or null to only keep the tail in memory
+     * @param maxSpillBytes : maximum size of the file; text which does not fit any more is replaced
+     *                        by a single "[truncated]" line (the tail in memory is still updated)
+     */
+    public BoundedTextLog(int maxLength, File spillFile, long maxSpillBytes) {
+        this.maxLength = maxLength;
+        this.buffer = new StringBuilder();
+        this.maxSpillBytes = maxSpillBytes;
+        if (spillFile != null) {
+            try {
+                this.spillWriter = new BufferedWriter(new OutputStreamWriter(
+                        new FileOutputStream(spillFile), StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                System.err.println("Could not open log file " + spillFile + ": " + e.getMessage());
+            }
+        }
+    }
+
+    public synchronized void append(String text) {
+        this.buffer.append(text);
+        // trim in big chunks so that the cost of trimming is amortized over many appends
+        if (this.buffer.length() > 2 * this.maxLength) {
+            int discarded = this.buffer.length() - this.maxLength;
+            this.bufferStartsMidLine = this.buffer.charAt(discarded - 1) != '\n';
+            this.buffer.delete(0, discarded);
+        }
+        if (this.spillWriter != null) {
+            try {
+                this.spillBytes += getUTF8Length(text);
+                if (this.spillBytes <= this.maxSpillBytes) {
+                    this.spillWriter.write(text);
+                } else {
+                    this.spillWriter.write(TRUNCATED_LINE);
+                    closeSpillWriter();
+                }
+            } catch (IOException e) {
+                closeSpillWriter();
+            }
+        }
+    }
+
+    private static long getUTF8Length(String text) {
+        long length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                length += 4;  // the low surrogate adds nothing
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    public void appendLine(String line) {
+        append(line + "\n");
+    }
+
+    /**
+     * @return : the last (up to) maxLength characters of the log
+     */
+    public synchronized String getText() {
+        return this.buffer.substring(Math.max(0, this.buffer.length() - this.maxLength));
+    }
+
+    /**
+     * @return : the complete lines (without line breaks) among the last (up to) maxLength characters of the log
+     */
+    public synchronized List<String> getLines() {
+        int start = Math.max(0, this.buffer.length() - this.maxLength);
+        boolean cutOff = (start > 0) ? this.buffer.charAt(start - 1) != '\n' : this.bufferStartsMidLine;
+        if (cutOff) {
+            int lineEnd = this.buffer.indexOf("\n", start);
+            start = (lineEnd < 0) ? this.buffer.length() : lineEnd + 1;
+        }
+
+        List<String> lines = new ArrayList<>();
+        while (start < this.buffer.length()) {
+            int end = this.buffer.indexOf("\n", start);
+            if (end < 0) {
+                end = this.buffer.length();
+            }
+            lines.add(this.buffer.substring(start, end));
+            start = end + 1;
+        }
+        return lines;
+    }
+
+    /**
+     * @return : the last (up to) length characters of the log
+     */
+    public synchronized String getTail(int length) {
+        return this.buffer.substring(Math.max(0, this.buffer.length() - Math.min(length, this.maxLength)));
+    }
+
+    /**
+     * Flushes and closes the log file, if any. Text appended after this call is only kept in memory.
+     */
+    public synchronized void close() {
+        closeSpillWriter();
+    }
+
+    private void closeSpillWriter() {
+        if (this.spillWriter != null) {
+            try {
+                this.spillWriter.close();
+            } catch (IOException e) {}
+            this.spillWriter = null;
+        }
+    }
+}
@@ -1,186 +1,400 @@
-// Copyright 2015 theaigames.com (developers@theaigames.com)
-
-//    Licensed under the Apache License, Version 2.0 (the "License");
-//    you may not use this file except in compliance with the License.
-//    You may obtain a copy of the License at
-
-//        http://www.apache.org/licenses/LICENSE-2.0
-
-//    Unless required by applicable law or agreed to in writing, software
-//    distributed under the License is distributed on an "AS IS" BASIS,
-//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
-//    See the License for the specific language governing permissions and
-//    limitations under the License.
-//
-//    For the full copyright and license information, please view the LICENSE
-//    file that was distributed with this source code.
-
-package com.theaigames.engine.io;
-
-import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.util.List;
-import java.util.LinkedList;
-import java.util.logging.Level;
-import java.util.logging.Logger;
-
-/**
- * IOPlayer class
- *
- * Does the communication between the bot process and the engine
- *
- * @author Jackie Xu <jackie@starapple.nl>, Jim van Eeden <jim@starapple.nl>
- */
-public class IOPlayer implements Runnable {
-
-    private String streamName;
-    private Process process;
-    private OutputStreamWriter outputStream;
-    private InputStreamGobbler processStdOutGobbler;
-    private InputStreamGobbler processStdErrGobbler;
-
-    private Logger communicationLogger;
-    private List<String> errorLog;
-    private List<String> communicationLog;
-
-    private int errorCounter;
-    private boolean finished;
-    private final int maxErrors = 2;
-
-    // the last unprocessed line received form the bot. Is replaced by a new line whenever a
-    // new line is recieved. Is also reset to null every time the data is consumed
-    private String response;
-
-    public IOPlayer(Process process, String streamName, Logger communicationLogger) {
-        this.streamName = streamName;
-        this.process = process;
-        this.communicationLogger = communicationLogger;
-
-        // send data to the process stdin
-        this.outputStream = new OutputStreamWriter(process.getOutputStream());
-
-        // get responses from the process's stdout
-        this.processStdOutGobbler = new InputStreamGobbler(process.getInputStream(), this::recordInputFromProcess);
-
-        // record data from the process's stderr, but ignore it
-        this.processStdErrGobbler = new InputStreamGobbler(process.getErrorStream(), null);
-
-        this.communicationLog = new LinkedList<>();
-        this.errorLog = new LinkedList<>();
-        this.errorCounter = 0;
-
-        this.finished = false;
-    }
-
-    public synchronized void recordInputFromProcess(String data) {
-        this.response = data;
-    }
-
-    // processes a line by reading it or writing it
-    public void sendToPlayer(String line) throws IOException {
-        if (!this.finished) {
-            logCommunication("->", line);
-            try {
-                this.outputStream.write(line + "\n");
-                this.outputStream.flush();
-            } catch(IOException e) {
-                this.errorLog.add("Writing to bot failed");
-                logCommunication("!!", "Writing to bot failed");
-            }
-        }
-    }
-
-    // waits for a response from the bot
-    public String getResponse(long timeOut) {
-        if (this.errorCounter > this.maxErrors) {
-            logCommunication("<-", "<skipping player - too many errors>");
-            return "";
-        }
-
-        long timeStart = System.currentTimeMillis();
-
-        while(this.response == null) {
-            long timeNow = System.currentTimeMillis();
-            long timeElapsed = timeNow - timeStart;
-
-            if(timeOut > 0 && timeElapsed >= timeOut) {
-                logCommunication("<-", "<timeout>");
-                errorLog.add("Response timed out after " + timeOut + "ms (return 'No moves' instead of nothing or play faster)");
-
-                this.errorCounter++;
-                if (this.errorCounter > this.maxErrors) {
-                    errorLog.add("Maximum number (" + this.maxErrors + ") of time-outs reached: skipping all moves.");
-                    finish();
-                }
-                return "";
-            }
-
-            try { Thread.sleep(2); } catch (InterruptedException e) {}
-        }
-
-        String lastResponse = this.response;
-        this.response = null;
-
-        if(lastResponse.equalsIgnoreCase("No moves")) {
-            logCommunication("<-",  "<no moves>");
-            return "";
-        }
-        logCommunication("<-", lastResponse);
-        return lastResponse;
-    }
-
-    // ends the bot process and it's communication
-    public void finish() {
-
-        if(this.finished)
-            return;
-
-    	try {
-            this.outputStream.close();
-        } catch (IOException e) {}
-
-        this.process.destroy();
-        try {
-            this.process.waitFor();
-        } catch (InterruptedException ex) {
-            Logger.getLogger(IOPlayer.class.getName()).log(Level.SEVERE, null, ex);
-        }
-
-        this.finished = true;
-    }
-
-    public Process getProcess() {
-        return this.process;
-    }
-
-    public String getStdout() {
-        return this.processStdOutGobbler.getData();
-    }
-
-    public String getStderr() {
-        return this.processStdErrGobbler.getData();
-    }
-
-    public List<String> getErrorLog() {
-        return this.errorLog;
-    }
-
-    public List<String> getCommunicationLog() {
-        return this.communicationLog;
-    }
-
-    private void logCommunication(String type, String message) {
-        String logMessage = String.format("%s [%s] '%s'\n", type, this.streamName, message);
-        communicationLog.add(logMessage);
-        if (communicationLogger != null) {
-            communicationLogger.info(logMessage);
-        }
-    }
-
-    @Override
-    // start communication with the bot
-    public void run() {
-        this.processStdOutGobbler.start();
-        this.processStdErrGobbler.start();
-    }
-}
+// Copyright 2015 theaigames.com (developers@theaigames.com)
+
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+
+//        http://www.apache.org/licenses/LICENSE-2.0
+
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+//    For the full copyright and license information, please view the LICENSE
+//    file that was distributed with this source code.
+
+package com.theaigames.engine.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.ProcessBuilder.Redirect;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * IOPlayer class
+ *
+ * Does the communication between the bot process and the engine
+ *
+ * @author Jackie Xu <jackie@starapple.nl>, Jim van Eeden <jim@starapple.nl>
+ */
+public class IOPlayer implements Runnable {
+
+    private String streamName;
+    private Process process;
+    private StringBuilder pendingOutput;
+    private OutputStreamFeeder processStdInFeeder;
+    private InputStreamGobbler processStdOutGobbler;
+    private InputStreamGobbler processStdErrGobbler;  // null if stderr is redirected by the OS
+    private Redirect processStdErrRedirect;
+
+    private Logger communicationLogger;
+    private BoundedTextLog errorLog;
+    private BoundedTextLog communicationLog;
+
+    private int errorCounter;
+    private volatile boolean finished;
+    private final int maxErrors = 2;
+
+    // set when the bot process exits on its own (i.e. not terminated by finish())
+    private volatile boolean crashed;
+    private boolean exitedStateReported;
+
+    private boolean writeFailureLogged;
+    private long lastResponseTime;
+    private int logSize;
+
+    private static final int MAX_PENDING_OUTPUT_BATCHES = 16;
+    private static final int STDERR_TAIL_LENGTH = 2000;
+    public static final int DEFAULT_LOG_SIZE = 64 * 1024;
+    // bytes of stdout and stderr written to the log files at most, so a bot stuck in a loop can not fill the disk
+    private static final long MAX_OUTPUT_LOG_FILE_SIZE = 1000000;
+    private static final long STDOUT_DRAIN_TIMEOUT = 1000; // ms
+
+    // the last unprocessed line received form the bot. Is replaced by a new line whenever a
+    // new line is recieved. Is also reset to null every time the data is consumed
+    private String response;
+
+    public IOPlayer(Process process, String streamName, Logger communicationLogger) {
+        this(process, streamName, communicationLogger, DEFAULT_LOG_SIZE, null, Redirect.PIPE);
+    }
+
+    /**
+     * @param logSize        : number of most recent characters of each log (stdout, stderr, communication, errors)
+     *                         to keep in memory
+     * @param logDirectory   : directory to write full logs to, or null to keep only the tails in memory
+     * @param stderrRedirect : how the process was started with regard to stderr; unless it is Redirect.PIPE
+     *                         stderr is not read by the engine
+     */
+    public IOPlayer(Process process, String streamName, Logger communicationLogger, int logSize, File logDirectory,
+            Redirect stderrRedirect) {
+        this.streamName = streamName;
+        this.process = process;
+        this.communicationLogger = communicationLogger;
+
+        // send data to the process stdin; data is buffered until flushed, so that all lines
+        // preceding a prompt reach the bot in a single write. The actual writing is done on
+        // a separate thread, so a bot which does not read its input can not block the engine
+        this.pendingOutput = new StringBuilder();
+        this.processStdInFeeder = new OutputStreamFeeder(process.getOutputStream(), MAX_PENDING_OUTPUT_BATCHES);
+
+        // get responses from the process's stdout
+        this.processStdOutGobbler = new InputStreamGobbler(process.getInputStream(), this::recordInputFromProcess,
+                new BoundedTextLog(logSize, getLogFile(logDirectory, streamName, "stdout"), MAX_OUTPUT_LOG_FILE_SIZE));
+
+        // record data from the process's stderr, but ignore it (unless it goes directly to a file)
+        this.processStdErrRedirect = stderrRedirect;
+        if (stderrRedirect.type() == Redirect.Type.PIPE) {
+            this.processStdErrGobbler = new InputStreamGobbler(process.getErrorStream(), null,
+                    new BoundedTextLog(logSize, getLogFile(logDirectory, streamName, "stderr"), MAX_OUTPUT_LOG_FILE_SIZE));
+        }
+        this.logSize = logSize;
+
+        this.communicationLog = new BoundedTextLog(logSize, getLogFile(logDirectory, streamName, "communication"));
+        this.errorLog = new BoundedTextLog(logSize, getLogFile(logDirectory, streamName, "errors"));
+        this.errorCounter = 0;
+
+        this.finished = false;
+
+        // get notified as soon as the bot process dies, instead of waiting for a time-out
+        this.crashed = false;
+        process.onExit().thenRun(this::processExited);
+    }
+
+    /**
+     * @return : the file a given log of the given player is written to, or null if logDirectory is null
+     */
+    public static File getLogFile(File logDirectory, String streamName, String logName) {
+        return (logDirectory == null) ? null : new File(logDirectory, streamName + "." + logName + ".log");
+    }
+
+    public synchronized void recordInputFromProcess(String data) {
+        this.response = data;
+        notifyAll();
+    }
+
+    // called on the thread which completes Process.onExit(), so it must not block
+    private synchronized void processExited() {
+        if (this.finished) {
+            return;
+        }
+        this.crashed = true;
+        notifyAll();
+    }
+
+    // lets the gobbler read whatever the bot managed to write before exiting (on its own thread,
+    // the caller only waits for it), and takes the last line of it
+    private String takeResponseAfterExit() {
+        try {
+            this.processStdOutGobbler.join(STDOUT_DRAIN_TIMEOUT);
+        } catch (InterruptedException e) {}
+
+        synchronized (this) {
+            String lastResponse = this.response;
+            this.response = null;
+            return lastResponse;
+        }
+    }
+
+    // sends a line to the bot immediately, together with all lines queued so far
+    public void sendToPlayer(String line) throws IOException {
+        queueToPlayer(line);
+        flushToPlayer();
+    }
+
+    // buffers a line to be sent to the bot on the next flushToPlayer() or sendToPlayer()
+    public void queueToPlayer(String line) throws IOException {
+        if (!this.finished) {
+            logCommunication("->", line);
+            this.pendingOutput.append(line).append('\n');
+        }
+    }
+
+    // sends all queued lines to the bot
+    public void flushToPlayer() throws IOException {
+        if (!this.finished) {
+            checkWriteFailure();
+            if (this.pendingOutput.length() > 0) {
+                this.processStdInFeeder.submit(this.pendingOutput.toString());
+                this.pendingOutput.setLength(0);
+            }
+        }
+    }
+
+    private void checkWriteFailure() {
+        if (this.processStdInFeeder.hasFailed() && !this.writeFailureLogged) {
+            this.errorLog.appendLine("Writing to bot failed");
+            logCommunication("!!", "Writing to bot failed");
+            this.writeFailureLogged = true;
+        }
+    }
+
+    // waits for a response from the bot
+    public String getResponse(long timeOut) {
+        if (this.errorCounter > this.maxErrors) {
+            logCommunication("<-", "<skipping player - too many errors>");
+            this.lastResponseTime = 0;
+            return "";
+        }
+
+        if (this.crashed) {
+            String lastResponse = takeResponseAfterExit();
+            this.lastResponseTime = 0;
+            return (lastResponse == null) ? botExited() : processResponse(lastResponse);
+        }
+
+        // the time only starts counting when the bot has received the whole prompt
+        // (a bot which does not read its input in time is timed out as well)
+        if (!this.processStdInFeeder.awaitDelivery(timeOut)) {
+            checkWriteFailure();
+            if (!this.processStdInFeeder.hasFailed()) {
+                this.lastResponseTime = timeOut;
+                return timedOut(timeOut);
+            }
+        }
+        // a prompt the feeder failed to write is never delivered, so the time counts from now
+        // (and the wait ends as soon as the bot process is seen to have exited)
+        long timeStart = this.processStdInFeeder.hasFailed() ? System.currentTimeMillis()
+                : this.processStdInFeeder.getLastDeliveryTime();
+
+        String lastResponse;
+        synchronized (this) {
+            long timeElapsed = System.currentTimeMillis() - timeStart;
+            while (this.response == null && !this.crashed && (timeOut <= 0 || timeElapsed < timeOut)) {
+                try { wait(timeOut > 0 ? timeOut - timeElapsed : 0); } catch (InterruptedException e) {}
+                timeElapsed = System.currentTimeMillis() - timeStart;
+            }
+            this.lastResponseTime = timeElapsed;
+
+            lastResponse = this.response;
+            this.response = null;
+        }
+
+        if (lastResponse == null && this.crashed) {
+            lastResponse = takeResponseAfterExit();
+        }
+        if (lastResponse == null) {
+            return this.crashed ? botExited() : timedOut(timeOut);
+        }
+        return processResponse(lastResponse);
+    }
+
+    private String processResponse(String lastResponse) {
+        if(lastResponse.equalsIgnoreCase("No moves")) {
+            logCommunication("<-",  "<no moves>");
+            return "";
+        }
+        logCommunication("<-", lastResponse);
+        return lastResponse;
+    }
+
+    private String timedOut(long timeOut) {
+        logCommunication("<-", "<timeout>");
+        errorLog.appendLine("Response timed out after " + timeOut + "ms (return 'No moves' instead of nothing or play faster)");
+
+        this.errorCounter++;
+        if (this.errorCounter > this.maxErrors) {
+            errorLog.appendLine("Maximum number (" + this.maxErrors + ") of time-outs reached: skipping all moves.");
+            finish();
+        }
+        return "";
+    }
+
+    private String botExited() {
+        if (!this.exitedStateReported) {
+            int exitCode = this.process.exitValue();
+            logCommunication("<-", "<bot process exited with code " + exitCode + ">");
+            errorLog.appendLine("Bot process exited with code " + exitCode + ": skipping all moves. Last stderr output:\n" + getStderrTail());
+            this.exitedStateReported = true;
+        }
+        this.errorCounter = this.maxErrors + 1;
+        return "";
+    }
+
+    /**
+     * @return : true if the bot process has exited on its own, i.e. before the engine finished it
+     */
+    public boolean hasCrashed() {
+        return this.crashed;
+    }
+
+    /**
+     * @return : time (in ms) the bot took to reply to the last prompt, counting
+     *           from the moment the prompt was fully delivered to the bot
+     */
+    public long getLastResponseTime() {
+        return this.lastResponseTime;
+    }
+
+    // ends the bot process and it's communication
+    public void finish() {
+
+        if(this.finished)
+            return;
+
+        this.finished = true;
+
+        this.processStdInFeeder.close();
+
+        this.process.destroy();
+        try {
+            this.process.waitFor();
+        } catch (InterruptedException ex) {
+            Logger.getLogger(IOPlayer.class.getName()).log(Level.SEVERE, null, ex);
+        }
+
+        // stdout and stderr logs are closed by the gobblers once the process output is fully read
+        this.communicationLog.close();
+        this.errorLog.close();
+    }
+
+    public Process getProcess() {
+        return this.process;
+    }
+
+    public OutputStreamFeeder getStdinFeeder() {
+        return this.processStdInFeeder;
+    }
+
+    public String getStdout() {
+        return this.processStdOutGobbler.getData();
+    }
+
+    public String getStderr() {
+        if (this.processStdErrGobbler == null) {
+            return readFileTail(this.processStdErrRedirect.file(), this.logSize);
+        }
+        return this.processStdErrGobbler.getData();
+    }
+
+    /**
+     * @return : the last (up to STDERR_TAIL_LENGTH) characters the bot has written to stderr
+     */
+    public String getStderrTail() {
+        if (this.processStdErrGobbler == null) {
+            return readFileTail(this.processStdErrRedirect.file(), STDERR_TAIL_LENGTH);
+        }
+        return this.processStdErrGobbler.getTail(STDERR_TAIL_LENGTH);
+    }
+
+    /**
+     * @return : (up to) the last maxLength bytes of the given file, or "" if the file can not be read
+     */
+    private static String readFileTail(File file, int maxLength) {
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            long length = input.length();
+            byte[] tail = new byte[(int) Math.min(length, maxLength)];
+            input.seek(length - tail.length);
+            input.readFully(tail);
+            // the tail may start in the middle of a character: skip its continuation bytes (10xxxxxx)
+            int start = 0;
+            while (start < tail.length && (tail[start] & 0xC0) == 0x80) {
+                start++;
+            }
+            return new String(tail, start, tail.length - start, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return "";
+        }
+    }
+
+    /**
+     * @return : the most recent lines of the error log, as far as they are kept in memory
+     */
+    public List<String> getErrorLog() {
+        return this.errorLog.getLines();
+    }
+
+    /**
+     * @return : the most recent lines of the communication log, as far as they are kept in memory
+     */
+    public List<String> getCommunicationLog() {
+        return this.communicationLog.getLines();
+    }
+
+    /**
+     * @return : the most recent part of the error log
+     */
+    public String getErrorLogTail() {
+        return this.errorLog.getText();
+    }
+
+    /**
+     * @return : the most recent part of the communication log
+     */
+    public String getCommunicationLogTail() {
+        return this.communicationLog.getText();
+    }
+
+    private void logCommunication(String type, String message) {
+        String logMessage = String.format("%s [%s] '%s'\n", type, this.streamName, message);
+        communicationLog.append(logMessage);
+        if (communicationLogger != null) {
+            communicationLogger.info(logMessage);
+        }
+    }
+
+    @Override
+    // start communication with the bot
+    public void run() {
+        this.processStdInFeeder.start();
+        this.processStdOutGobbler.start();
+        if (this.processStdErrGobbler != null) {
+            this.processStdErrGobbler.start();
+        }
+    }
+}
@@ -26,19 +26,19 @@ import java.util.function.Consumer;
 /**
  * InputStreamGobbler class
  *
- * Reads output from bots and stores it
+ * Reads output from bots and stores (the tail of) it
  *
  * @author Jackie Xu <jackie@starapple.nl>, Jim van Eeden <jim@starapple.nl>
  */
 public class InputStreamGobbler extends Thread {
 
     private InputStream inputStream;
-    private StringBuffer buffer;
+    private BoundedTextLog log;
     Consumer<String> receiver; // the consumer method for any received data
 
-    InputStreamGobbler(InputStream inputStream, Consumer<String> receiver) {
+    InputStreamGobbler(InputStream inputStream, Consumer<String> receiver, BoundedTextLog log) {
         this.inputStream = inputStream;
-        this.buffer = new StringBuffer();
+        this.log = log;
         this.receiver = receiver;
     }
 
@@ -50,11 +50,12 @@ public class InputStreamGobbler extends Thread {
 
             String lastLine;
             while ((lastLine = bufferedReader.readLine()) != null) {
-                if (!lastLine.contains("VM warning") && buffer.length() < 1000000) { //catches bots that return way too much (infinite loop)
+                // a bot that returns way too much (e.g. an infinite loop) only costs the size of the log
+                if (!lastLine.contains("VM warning")) {
                     if (this.receiver != null) {
                         this.receiver.accept(lastLine);
                     }
-                    buffer.append(lastLine + "\n");
+                    log.appendLine(lastLine);
                 }
             }
             try {
@@ -63,10 +64,16 @@ public class InputStreamGobbler extends Thread {
 
         } catch (IOException x) {
             throw new RuntimeException(x);
+        } finally {
+            log.close();
         }
     }
 
     public String getData() {
-        return buffer.toString();
+        return log.getText();
+    }
+
+    public String getTail(int length) {
+        return log.getTail(length);
     }
 }
@@ -0,0 +1,169 @@
+// Copyright 2015 theaigames.com (developers@theaigames.com)
+
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+
+//        http://www.apache.org/licenses/LICENSE-2.0
+
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+//    For the full copyright and license information, please view the LICENSE
+//    file that was distributed with this source code.
+
+package com.theaigames.engine.io;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OutputStreamFeeder class
+ *
+ * Writes data to a bot on a separate thread, so that the engine never blocks when the bot
+ * does not drain its input fast enough (e.g. a big setup_map line does not fit into the pipe buffer).
+ *
+ * Up to a fixed number of batches may be pending, after that submit() blocks until the bot reads
+ * some data; the number of such stalls and the total time spent in them are recorded.
+ */
+public class OutputStreamFeeder extends Thread {
+
+    private static final String END_OF_STREAM = new String("<end of stream>"); // compared by reference
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long STALL_CHECK_INTERVAL = 50; // ms
+
+    private Writer outputStream;
+    private BlockingQueue<String> pendingBatches;
+
+    private long submittedBatches;           // only accessed from the engine thread
+    private volatile long deliveredBatches;  // only modified from the feeder thread
+    private volatile long lastDeliveryTime;
+    private volatile boolean failed;
+
+    private long stalls;
+    private long stallTimeMs;
+
+    OutputStreamFeeder(OutputStream outputStream, int maxPendingBatches) {
+        this.outputStream = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), BUFFER_SIZE);
+        this.pendingBatches = new ArrayBlockingQueue<>(maxPendingBatches);
+        this.lastDeliveryTime = System.currentTimeMillis();
+        this.setDaemon(true);
+    }
+
+    /**
+     * Hands a batch of data over to the feeder thread. Only blocks if the maximum
+     * number of batches are already waiting to be written.
+     */
+    void submit(String batch) {
+        boolean accepted = this.pendingBatches.offer(batch);
+        if (!accepted) {
+            this.stalls++;
+            long stallStart = System.currentTimeMillis();
+            try {
+                // keep checking if the feeder is still alive, otherwise nobody will ever drain the queue
+                while (!accepted && !this.failed) {
+                    accepted = this.pendingBatches.offer(batch, STALL_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            this.stallTimeMs += System.currentTimeMillis() - stallStart;
+        }
+        if (accepted) {
+            this.submittedBatches++;
+        }
+    }
+
+    /**
+     * Waits until all submitted data has been written to the bot, but for at most timeOut ms
+     * (no limit if timeOut is not positive).
+     *
+     * @return : true if all data has been delivered
+     */
+    synchronized boolean awaitDelivery(long timeOut) {
+        long waitUntil = System.currentTimeMillis() + timeOut;
+        while (this.deliveredBatches < this.submittedBatches && !this.failed) {
+            long waitTime = waitUntil - System.currentTimeMillis();
+            if (timeOut > 0 && waitTime <= 0) {
+                return false;
+            }
+            try {
+                wait(timeOut > 0 ? waitTime : 0);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return !this.failed;
+    }
+
+    /**
+     * @return : the time (in ms) when the last batch was fully written to the bot
+     */
+    long getLastDeliveryTime() {
+        return this.lastDeliveryTime;
+    }
+
+    boolean hasFailed() {
+        return this.failed;
+    }
+
+    /**
+     * @return : the number of times submit() had to wait for the bot to read its input
+     */
+    public long getStalls() {
+        return this.stalls;
+    }
+
+    /**
+     * @return : total time (in ms) submit() has spent waiting for the bot to read its input
+     */
+    public long getStallTime() {
+        return this.stallTimeMs;
+    }
+
+    /**
+     * Stops the feeder thread after all pending data is written, or immediately
+     * if no more data can be queued.
+     */
+    void close() {
+        if (!this.pendingBatches.offer(END_OF_STREAM)) {
+            this.interrupt();
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            String batch;
+            while ((batch = this.pendingBatches.take()) != END_OF_STREAM) {
+                this.outputStream.write(batch);
+                this.outputStream.flush();
+                synchronized (this) {
+                    this.lastDeliveryTime = System.currentTimeMillis();
+                    this.deliveredBatches++;
+                    notifyAll();
+                }
+            }
+        } catch (IOException | InterruptedException e) {
+            synchronized (this) {
+                this.failed = true;
+                notifyAll();
+            }
+        } finally {
+            try {
+                this.outputStream.close();
+            } catch (IOException e) {}
+        }
+    }
+}
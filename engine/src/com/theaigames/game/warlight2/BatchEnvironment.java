@@ -0,0 +1,251 @@
+// Copyright 2015 theaigames.com (developers@theaigames.com)
+
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+
+//        http://www.apache.org/licenses/LICENSE-2.0
+
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+//    For the full copyright and license information, please view the LICENSE
+//    file that was distributed with this source code.
+
+
+package com.theaigames.game.warlight2;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.theaigames.game.warlight2.move.MoveBuffer;
+
+/**
+ * BatchEnvironment class
+ *
+ * Plays a batch of independent games from the same starting position in lockstep, e.g. for
+ * self-play training. Each step executes one round of moves in every game which is not over yet;
+ * the games are divided over the threads of a ForkJoinPool. The observations (owners, armies and
+ * income) and rewards of all games are kept in flat arrays, game after game, so they can be read
+ * (or handed to native code) without touching the states of the individual games.
+ *
+ * The rules are the ones of GameState (and therefore of the Processor). A game is over as soon as
+ * only one player owns regions, or after maxRounds rounds played from the starting position (a draw),
+ * which may itself be in the middle of a game. Games which are over are not stepped until they are reset.
+ *
+ * Each game has its own random number generator, seeded from the seed of the environment when the
+ * game is reset, so the results do not depend on the number of threads used.
+ */
+
+public class BatchEnvironment
+{
+    private static final int SEQUENTIAL_THRESHOLD = 16;  // games stepped by a single task
+
+    private final GameState initialState;
+    private final GameState[] games;
+    private final SplitMix64[] gameRnds;
+    private final SplitMix64 seedRnd;
+    private final ForkJoinPool pool;
+    private final int maxRounds;
+    private final int[] startRoundNrs;  // game -> the round number of the state at its last reset
+    private final int numPlayers;
+    private final int regionStride;  // length of the observation of a single game, i.e. the max region ID + 1
+
+    private final int[] owners;      // game * regionStride + region ID -> player index, or GameState.NEUTRAL
+    private final int[] armies;      // game * regionStride + region ID -> armies
+    private final int[] income;      // game * numPlayers + player -> armies to place in the next round
+    private final float[] rewards;   // game * numPlayers + player -> reward of the last step
+    private final boolean[] done;    // game -> true if the game is over
+
+    public BatchEnvironment(GameState initialState, int numGames, long seed, int maxRounds) {
+        this(initialState, numGames, seed, maxRounds, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param initialState : the position all games start from (is copied)
+     * @param maxRounds    : number of rounds (played from the starting position) after which a game is
+     *                       over (and a draw)
+     * @param pool         : the pool the games are stepped on
+     */
+    public BatchEnvironment(GameState initialState, int numGames, long seed, int maxRounds, ForkJoinPool pool) {
+        this.initialState = initialState.copy();
+        this.games = new GameState[numGames];
+        this.gameRnds = new SplitMix64[numGames];
+        this.seedRnd = new SplitMix64(seed);
+        this.pool = pool;
+        this.maxRounds = maxRounds;
+        this.startRoundNrs = new int[numGames];
+        this.numPlayers = initialState.getNumPlayers();
+        this.regionStride = initialState.getAdjacency().getMaxRegionID() + 1;
+
+        this.owners = new int[numGames * this.regionStride];
+        this.armies = new int[numGames * this.regionStride];
+        this.income = new int[numGames * this.numPlayers];
+        this.rewards = new float[numGames * this.numPlayers];
+        this.done = new boolean[numGames];
+
+        for (int game = 0; game < numGames; game++) {
+            this.games[game] = this.initialState.copy();
+        }
+        reset();
+    }
+
+    /**
+     * Puts all games back in the starting position
+     */
+    public void reset() {
+        for (int game = 0; game < this.games.length; game++) {
+            reset(game);
+        }
+    }
+
+    /**
+     * Puts a single game back in the starting position, e.g. when it is over
+     */
+    public void reset(int game) {
+        this.games[game].copyFrom(this.initialState);
+        this.startRoundNrs[game] = this.games[game].getRoundNr();
+        this.gameRnds[game] = this.seedRnd.split();
+        Arrays.fill(this.rewards, game * this.numPlayers, (game + 1) * this.numPlayers, 0f);
+        this.done[game] = false;
+        observe(game);
+    }
+
+    /**
+     * Executes a round in every game which is not over. Afterwards the observations of all games are
+     * updated, and the rewards are set: 1 for the winner and -1 for the other players in games which
+     * ended in this step, 0 for everyone else.
+     *
+     * @param actions : game -> the moves of all players in the game for this round; the moves are
+     *                  updated with the result of their execution (see GameState.applyInPlace())
+     */
+    public void step(MoveBuffer[] actions) {
+        if (actions.length != this.games.length) {
+            throw new IllegalArgumentException("Expected actions for " + this.games.length + " games, got " + actions.length);
+        }
+        this.pool.invoke(new StepTask(actions, 0, this.games.length));
+    }
+
+    private void step(MoveBuffer[] actions, int game) {
+        int rewardOffset = game * this.numPlayers;
+        Arrays.fill(this.rewards, rewardOffset, rewardOffset + this.numPlayers, 0f);
+        if (this.done[game]) {
+            return;
+        }
+
+        GameState state = this.games[game];
+        SplitMix64 rnd = this.gameRnds[game];
+        state.applyInPlace(actions[game], rnd, rnd, null);
+
+        int winner = state.getWinner();
+        if (winner >= 0) {
+            for (int player = 0; player < this.numPlayers; player++) {
+                this.rewards[rewardOffset + player] = (player == winner) ? 1f : -1f;
+            }
+            this.done[game] = true;
+        } else if (state.getRoundNr() - this.startRoundNrs[game] >= this.maxRounds) {
+            this.done[game] = true;
+        }
+        observe(game);
+    }
+
+    private void observe(int game) {
+        GameState state = this.games[game];
+        state.copyOwnersTo(this.owners, game * this.regionStride);
+        state.copyArmiesTo(this.armies, game * this.regionStride);
+        for (int player = 0; player < this.numPlayers; player++) {
+            this.income[game * this.numPlayers + player] = state.getIncome(player);
+        }
+    }
+
+    private class StepTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final MoveBuffer[] actions;
+        private final int from;
+        private final int to;
+
+        StepTask(MoveBuffer[] actions, int from, int to) {
+            this.actions = actions;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from <= SEQUENTIAL_THRESHOLD) {
+                for (int game = this.from; game < this.to; game++) {
+                    step(this.actions, game);
+                }
+            } else {
+                int middle = (this.from + this.to) >>> 1;
+                invokeAll(new StepTask(this.actions, this.from, middle), new StepTask(this.actions, middle, this.to));
+            }
+        }
+    }
+
+    //===================================================================================
+
+    public int getNumGames() {
+        return this.games.length;
+    }
+
+    public int getNumPlayers() {
+        return this.numPlayers;
+    }
+
+    /**
+     * @return : the length of the owners/armies observation of a single game (max region ID + 1)
+     */
+    public int getRegionStride() {
+        return this.regionStride;
+    }
+
+    /**
+     * @return : the state of a game; it must not be changed while a step is executed
+     */
+    public GameState getGame(int game) {
+        return this.games[game];
+    }
+
+    /**
+     * @return : game * getRegionStride() + region ID -> index of the owning player, or GameState.NEUTRAL
+     *           (not a copy, so it is updated by every step)
+     */
+    public int[] getOwners() {
+        return this.owners;
+    }
+
+    /**
+     * @return : game * getRegionStride() + region ID -> armies on the region (not a copy)
+     */
+    public int[] getArmies() {
+        return this.armies;
+    }
+
+    /**
+     * @return : game * getNumPlayers() + player -> armies the player gets to place in the next round (not a copy)
+     */
+    public int[] getIncome() {
+        return this.income;
+    }
+
+    /**
+     * @return : game * getNumPlayers() + player -> reward of the last step (not a copy)
+     */
+    public float[] getRewards() {
+        return this.rewards;
+    }
+
+    /**
+     * @return : game -> true if the game is over (not a copy)
+     */
+    public boolean[] getDone() {
+        return this.done;
+    }
+}
@@ -1,20 +1,52 @@
 package com.theaigames.game.warlight2;
 
 import java.lang.UnsupportedOperationException;
-import java.util.Random;
 import com.theaigames.game.warlight2.map.Settings;
 
 public class Battle
 {
     private int attackersDestroyed;
     private int defendersDestroyed;
-    private Settings settings;
-    private Random gameplayRnd;
 
-    public Battle(int attackingArmies, int defendingArmies, Random gameplayRnd, Settings settings) {
-        this.settings = settings;
-        this.gameplayRnd = gameplayRnd;
-        doBattle(attackingArmies, defendingArmies);
+    // battle settings, read once (looking up settings is relatively slow)
+    private final double offensiveKillRatio;
+    private final double defensiveKillRatio;
+    private final double luck;
+    private final Settings.RoundingMode roundingMode;
+
+    public Battle(int attackingArmies, int defendingArmies, SplitMix64 gameplayRnd, Settings settings) {
+        this(settings);
+        fight(attackingArmies, defendingArmies, gameplayRnd);
+    }
+
+    /**
+     * Creates a Battle which can be re-used for any number of fights, see fight()
+     */
+    public Battle(Settings settings) {
+        this.offensiveKillRatio = settings.getOffensiveKillRatio();
+        this.defensiveKillRatio = settings.getDefensiveKillRatio();
+        this.luck = settings.getLuckModifier();
+        this.roundingMode = settings.getRoundingMode();
+    }
+
+    /**
+     * Resolves a new fight, replacing the result of the previous one
+     */
+    public void fight(int attackingArmies, int defendingArmies, SplitMix64 gameplayRnd) {
+        double defendersDestroyed = attackingArmies * this.offensiveKillRatio;
+        double attackersDestroyed = defendingArmies * this.defensiveKillRatio;
+
+        if (this.luck > 0) {
+            // apply luck modifier: luck-weighted average between no-luck and full luck
+            defendersDestroyed = defendersDestroyed * (1 - this.luck)
+                    + this.getDefendersKilledFullLuck(attackingArmies, gameplayRnd) * this.luck;
+            attackersDestroyed = attackersDestroyed * (1 - this.luck)
+                    + this.getAttackersKilledFullLuck(defendingArmies, gameplayRnd) * this.luck;
+        }
+
+        // luck or no luck, apply rounding to the final amount of killed troops
+        this.defendersDestroyed = Math.min(defendingArmies, this.roundArmies(defendersDestroyed, gameplayRnd));
+        this.attackersDestroyed = this.roundArmies(attackersDestroyed, gameplayRnd);
     }
 
     public int getDestroyedAttackers() {
@@ -25,49 +57,30 @@ public class Battle
         return this.defendersDestroyed;
     }
 
-    private int getDefendersKilledFullLuck(int attackingArmies) {
+    private int getDefendersKilledFullLuck(int attackingArmies, SplitMix64 gameplayRnd) {
         int defendersDestroyed = 0;
         for (int t = 1; t <= attackingArmies; t++) // calculate how much defending armies are destroyed with 100% luck
         {
             double rand = gameplayRnd.nextDouble();
-            if (rand < settings.getOffensiveKillRatio()) // 60% chance to destroy one defending army
+            if (rand < this.offensiveKillRatio) // 60% chance to destroy one defending army
                 defendersDestroyed++;
         }
         return defendersDestroyed;
     }
 
-    private int getAttackersKilledFullLuck(int defendingArmies) {
+    private int getAttackersKilledFullLuck(int defendingArmies, SplitMix64 gameplayRnd) {
         int attackerDestroyed = 0;
         for (int t = 1; t <= defendingArmies; t++) // calculate how much attacking armies are destroyed with 100% luck
         {
             double rand = gameplayRnd.nextDouble();
-            if (rand < settings.getDefensiveKillRatio()) // 70% chance to destroy one attacking army
+            if (rand < this.defensiveKillRatio) // 70% chance to destroy one attacking army
                 attackersDestroyed++;
         }
         return attackerDestroyed;
     }
 
-    private void doBattle(int attackingArmies, int defendingArmies) {
-        double defendersDestroyed = attackingArmies * settings.getOffensiveKillRatio();
-        double attackersDestroyed = defendingArmies * settings.getDefensiveKillRatio();
-
-        double luck = settings.getLuckModifier();
-        if (luck > 0) {
-            // apply luck modifier: luck-weighted average between no-luck and full luck
-            defendersDestroyed = defendersDestroyed * (1 - luck) + this.getDefendersKilledFullLuck(attackingArmies) * luck;
-            attackersDestroyed = attackersDestroyed * (1 - luck) + this.getAttackersKilledFullLuck(defendingArmies) * luck;
-        }
-
-        // luck or no luck, apply rounding to the final amount of killed troops
-        this.defendersDestroyed = Math.min(defendingArmies, this.roundArmies(defendersDestroyed));
-        this.attackersDestroyed = this.roundArmies(attackersDestroyed);
-
-        System.out.format("Battle: %d attacked %d, %d atackers dies, %d defenders died\n",
-                attackingArmies, defendingArmies, this.attackersDestroyed, this.defendersDestroyed);
-    }
-
-    private int roundArmies(double armies) {
-        switch(settings.getRoundingMode()) {
+    private int roundArmies(double armies, SplitMix64 gameplayRnd) {
+        switch(this.roundingMode) {
             case STRAIGHT_ROUND:
                 return (int) Math.round(armies);
 
@@ -81,7 +94,7 @@ public class Battle
                 return rounded;
 
             default:
-                throw new UnsupportedOperationException("Rounding mode " + settings.getRoundingMode() + " is not supported");
+                throw new UnsupportedOperationException("Rounding mode " + this.roundingMode + " is not supported");
         }
     }
 }
@@ -4,6 +4,7 @@ import java.util.Collection;
 import java.util.List;
 
 import com.theaigames.game.warlight2.map.Map;
+import com.theaigames.game.warlight2.map.VisibleMapView;
 import com.theaigames.game.warlight2.move.Move;
 import com.theaigames.game.warlight2.move.AttackTransferMove;
 import com.theaigames.game.warlight2.move.PlaceArmiesMove;
@@ -15,6 +16,9 @@ import com.theaigames.game.warlight2.move.PlaceArmiesMove;
  * Player classes are assumed to perform the actual sending and receiving, this interface
  * provides an API for serializing and de-serializing game data before it is sent over a
  * communication channel.
+ *
+ * Methods which only send data to the bot are expected to queue it (see Player.queueInfo()),
+ * it is then delivered to the bot together with the next prompt the bot has to reply to.
  */
 public interface BotCommunication
 {
@@ -68,7 +72,7 @@ public interface BotCommunication
      * @param visibleMoves        : all moves performed last turn visible by this player
      * @param visibleMapForPlayer : the state of the map as observed by the player at the start of this turn
      */
-    public void sendTurnStartUpdate(Player player, List<Move> visibleMoves, Map visibleMapForPlayer);
+    public void sendTurnStartUpdate(Player player, List<Move> visibleMoves, VisibleMapView visibleMapForPlayer);
 
     /**
      * Asks the bot for his placeArmiesMoves and returns the answer
@@ -0,0 +1,323 @@
+// Copyright 2015 theaigames.com (developers@theaigames.com)
+
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+
+//        http://www.apache.org/licenses/LICENSE-2.0
+
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+//    For the full copyright and license information, please view the LICENSE
+//    file that was distributed with this source code.
+
+
+package com.theaigames.game.warlight2;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import com.theaigames.game.warlight2.map.Region;
+import com.theaigames.game.warlight2.map.VisibleMapView;
+import com.theaigames.game.warlight2.move.IllegalMoveReason;
+import com.theaigames.game.warlight2.move.MoveBuffer;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * FeatureWriter class
+ *
+ * Exports the features of every round of a game (e.g. to train models of bots), as the Processor plays
+ * the rounds: a directory with a file for every column, each a flat array of fixed-width little-endian
+ * numbers, so that it can be memory-mapped (e.g. numpy.memmap) without parsing. Per round:
+ *
+ *   round        : int32  [rounds]               the round number
+ *   income       : int32  [rounds, players]      the armies each player gets to place
+ *   owner        : int8   [rounds, region IDs]   player index, -1 for neutral (and for IDs not on the map)
+ *   armies       : int32  [rounds, region IDs]
+ *   visibility   : uint8  [rounds, region IDs]   bit 2p: the owner is visible to player p,
+ *                                                bit 2p+1: the armies are visible to player p
+ *   bonus_owner  : int8   [rounds, bonuses]      the player owning all regions of the bonus, -1 for none
+ *   num_orders   : int32  [rounds]               the number of orders of the round
+ *
+ * The regions are as they were at the start of the round. The orders of all rounds, in the order they
+ * were received, are in the columns order_player (int8), order_type (int8, see MoveBuffer), order_from
+ * (int32, the region deployed to for deployments), order_to (int32), order_armies (int32, as given),
+ * order_executed_armies (int32) and order_status (int8, 0 if legal, otherwise the IllegalMoveReason code).
+ *
+ * features.json describes the columns and the sizes of the dimensions; it is written again when the
+ * writer is closed, with the numbers of rounds and of orders of all rounds, and the winner. The columns
+ * are buffered, and written to the files when the buffers are full. Like for replays, writing errors do
+ * not stop the game: they are reported once, and the export stays incomplete.
+ */
+
+public class FeatureWriter implements Closeable
+{
+    public static final String METADATA_FILE = "features.json";
+    private static final int FORMAT_VERSION = 1;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Column class
+     *
+     * A column file, written through a buffer
+     */
+    private class Column
+    {
+        final String name;
+        final String type;    // numpy dtype
+        final String[] shape;
+        final FileChannel channel;
+        final ByteBuffer buffer;
+
+        Column(String name, String type, String... shape) throws IOException {
+            this.name = name;
+            this.type = type;
+            this.shape = shape;
+            this.channel = FileChannel.open(new File(directory, name).toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            this.buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        void putByte(int value) {
+            if (!this.buffer.hasRemaining()) {
+                flush();
+            }
+            this.buffer.put((byte) value);
+        }
+
+        void putInt(int value) {
+            if (this.buffer.remaining() < 4) {
+                flush();
+            }
+            this.buffer.putInt(value);
+        }
+
+        void flush() {
+            this.buffer.flip();
+            try {
+                while (this.buffer.hasRemaining() && !failed) {
+                    this.channel.write(this.buffer);
+                }
+            } catch (IOException e) {
+                fail(e);
+            }
+            this.buffer.clear();
+        }
+    }
+
+    private final File directory;
+    private final int numRegionIDs;
+    private final int numPlayers;
+    private final int[][] bonusRegions;   // bonus -> IDs of its regions
+    private final byte[] visibilityBits;  // region ID -> visibility of the current round
+
+    private final Column round, income, owner, armies, visibility, bonusOwner, numOrders;
+    private final Column orderPlayer, orderType, orderFrom, orderTo, orderArmies, orderExecutedArmies, orderStatus;
+    private final Column[] columns;
+
+    private int numRounds;
+    private int numAllOrders;  // of all rounds, the size of the orders dimension
+    private boolean failed;
+
+    /**
+     * Creates the directory and the column files (existing files are overwritten)
+     *
+     * @param state : a state of the game (only its map and players are used)
+     */
+    public FeatureWriter(File directory, GameState state) throws IOException {
+        directory.mkdirs();
+        this.directory = directory;
+        this.numRegionIDs = state.getAdjacency().getMaxRegionID() + 1;
+        this.numPlayers = state.getNumPlayers();
+        this.bonusRegions = new int[state.getNumSuperRegions()][];
+        for (int i = 0; i < this.bonusRegions.length; i++) {
+            this.bonusRegions[i] = state.getSuperRegionRegions(i).clone();
+        }
+        this.visibilityBits = new byte[this.numRegionIDs];
+
+        this.round = new Column("round", "<i4", "rounds");
+        this.income = new Column("income", "<i4", "rounds", "players");
+        this.owner = new Column("owner", "i1", "rounds", "region_ids");
+        this.armies = new Column("armies", "<i4", "rounds", "region_ids");
+        this.visibility = new Column("visibility", "u1", "rounds", "region_ids");
+        this.bonusOwner = new Column("bonus_owner", "i1", "rounds", "bonuses");
+        this.numOrders = new Column("num_orders", "<i4", "rounds");
+        this.orderPlayer = new Column("order_player", "i1", "orders");
+        this.orderType = new Column("order_type", "i1", "orders");
+        this.orderFrom = new Column("order_from", "<i4", "orders");
+        this.orderTo = new Column("order_to", "<i4", "orders");
+        this.orderArmies = new Column("order_armies", "<i4", "orders");
+        this.orderExecutedArmies = new Column("order_executed_armies", "<i4", "orders");
+        this.orderStatus = new Column("order_status", "i1", "orders");
+        this.columns = new Column[] { round, income, owner, armies, visibility, bonusOwner, numOrders,
+                orderPlayer, orderType, orderFrom, orderTo, orderArmies, orderExecutedArmies, orderStatus };
+
+        writeMetadata(-1, false);
+    }
+
+    /**
+     * Writes the features of the regions at the start of a round
+     *
+     * @param state       : the state at the start of the round
+     * @param visibleMaps : player index -> the map as visible to the player (already updated for the round)
+     */
+    public void writeRoundStart(int roundNr, GameState state, VisibleMapView... visibleMaps) {
+        this.round.putInt(roundNr);
+        for (int p = 0; p < this.numPlayers; p++) {
+            this.income.putInt(state.getIncome(p));
+        }
+
+        Arrays.fill(this.visibilityBits, (byte) 0);
+        for (int p = 0; p < visibleMaps.length; p++) {
+            for (Region region : visibleMaps[p].getMap().getRegions()) {
+                int bits = (visibleMaps[p].isOwnerFogged(region) ? 0 : 1 << (2 * p))
+                        | (visibleMaps[p].isFogged(region) ? 0 : 1 << (2 * p + 1));
+                this.visibilityBits[region.getId()] |= bits;
+            }
+        }
+        for (int regionID = 0; regionID < this.numRegionIDs; regionID++) {
+            this.owner.putByte(state.getOwner(regionID));
+            this.armies.putInt(state.getArmies(regionID));
+            this.visibility.putByte(this.visibilityBits[regionID]);
+        }
+
+        for (int[] regionIDs : this.bonusRegions) {
+            this.bonusOwner.putByte(getBonusOwner(state, regionIDs));
+        }
+    }
+
+    private static int getBonusOwner(GameState state, int[] regionIDs) {
+        int bonusOwner = (regionIDs.length > 0) ? state.getOwner(regionIDs[0]) : GameState.NEUTRAL;
+        for (int regionID : regionIDs) {
+            if (state.getOwner(regionID) != bonusOwner) {
+                return GameState.NEUTRAL;
+            }
+        }
+        return bonusOwner;
+    }
+
+    /**
+     * Writes the orders of the round as they were given, must be called before they are executed
+     * (executing them changes their armies)
+     */
+    public void writeRoundOrders(MoveBuffer orders) {
+        this.numOrders.putInt(orders.size());
+        for (int i = 0; i < orders.size(); i++) {
+            this.orderPlayer.putByte(orders.getPlayer(i));
+            this.orderType.putByte(orders.getType(i));
+            this.orderFrom.putInt(orders.getFromRegion(i));
+            this.orderTo.putInt(orders.getToRegion(i));
+            this.orderArmies.putInt(orders.getArmies(i));
+        }
+    }
+
+    /**
+     * Writes the results of the executed orders of the round, see writeRoundOrders()
+     */
+    public void writeRoundResults(MoveBuffer orders) {
+        for (int i = 0; i < orders.size(); i++) {
+            IllegalMoveReason reason = orders.getIllegalReason(i);
+            this.orderExecutedArmies.putInt(orders.getArmies(i));
+            this.orderStatus.putByte((reason == null) ? 0 : reason.getCode());
+        }
+        this.numAllOrders += orders.size();
+        this.numRounds++;
+    }
+
+    /**
+     * Writes everything that is buffered to the column files
+     */
+    public void flush() {
+        for (Column column : this.columns) {
+            column.flush();
+        }
+    }
+
+    /**
+     * Closes the column files, and writes the final description
+     *
+     * @param winner : the player index of the winner, -1 for a draw
+     */
+    public void close(int winner) {
+        flush();
+        writeMetadata(winner, true);
+        close();
+    }
+
+    @Override
+    public void close() {
+        for (Column column : this.columns) {
+            try {
+                column.channel.close();
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+    }
+
+    /**
+     * @return : false if the features could not be written completely
+     */
+    public boolean isComplete() {
+        return !this.failed;
+    }
+
+    private void fail(IOException e) {
+        if (!this.failed) {
+            System.err.println("Error writing the features, the rest of the game is not exported: " + e);
+            this.failed = true;
+        }
+    }
+
+    private void writeMetadata(int winner, boolean finished) {
+        JSONObject metadata = new JSONObject();
+        metadata.put("version", FORMAT_VERSION);
+        metadata.put("finished", finished);
+        metadata.put("rounds", this.numRounds);
+        metadata.put("winner", winner);
+
+        JSONObject dimensions = new JSONObject();
+        dimensions.put("rounds", this.numRounds);
+        dimensions.put("orders", this.numAllOrders);
+        dimensions.put("players", this.numPlayers);
+        dimensions.put("region_ids", this.numRegionIDs);
+        dimensions.put("bonuses", this.bonusRegions.length);
+        metadata.put("dimensions", dimensions);
+
+        JSONArray bonusRegions = new JSONArray();
+        for (int[] regionIDs : this.bonusRegions) {
+            bonusRegions.put(new JSONArray(regionIDs));
+        }
+        metadata.put("bonus_regions", bonusRegions);
+
+        JSONObject columns = new JSONObject();
+        for (Column column : this.columns) {
+            JSONObject columnJSON = new JSONObject();
+            columnJSON.put("dtype", column.type);
+            columnJSON.put("shape", new JSONArray(column.shape));
+            columns.put(column.name, columnJSON);
+        }
+        metadata.put("columns", columns);
+
+        try {
+            Files.write(new File(this.directory, METADATA_FILE).toPath(),
+                    metadata.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+}
@@ -0,0 +1,713 @@
+// Copyright 2015 theaigames.com (developers@theaigames.com)
+
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+
+//        http://www.apache.org/licenses/LICENSE-2.0
+
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+//    For the full copyright and license information, please view the LICENSE
+//    file that was distributed with this source code.
+
+package com.theaigames.game.warlight2;
+
+import java.util.Arrays;
+
+import com.theaigames.game.warlight2.map.Adjacency;
+import com.theaigames.game.warlight2.map.Map;
+import com.theaigames.game.warlight2.map.Region;
+import com.theaigames.game.warlight2.map.Settings;
+import com.theaigames.game.warlight2.map.SuperRegion;
+import com.theaigames.game.warlight2.map.VisibilityTracker;
+import com.theaigames.game.warlight2.move.IllegalMoveReason;
+import com.theaigames.game.warlight2.move.MoveBuffer;
+import com.theaigames.game.warlight2.move.MoveQueue;
+
+/**
+ * GameState class
+ *
+ * A headless forward model of the game: the owners and armies of all regions, and the rules
+ * for executing a round of moves on them. These are the rules the Processor uses for games
+ * between bots. A state holds only primitive arrays and does no I/O, so it is cheap to copy
+ * and to advance, e.g. for search bots, simulations and tests.
+ *
+ * Players are identified by their index, i.e. their position in the player names given at
+ * construction, regions by their ID. Data which does not change during a game (regions, bonuses,
+ * settings) is shared by all copies of a state. A state must not be used by more than one
+ * thread at a time, different states (also copies of each other) can be used concurrently.
+ *
+ * For trying many moves from the same position, rounds can be executed while recording the
+ * changes in an UndoJournal, and rolled back with undo() (make/unmake), instead of copying
+ * the state for every try. A 64 bit hash of the state is kept up to date with every change
+ * (see getHash()), e.g. for transposition tables or to find identical positions.
+ */
+
+public class GameState
+{
+    public static final int NEUTRAL = -1;  // owner of regions not owned by any player
+
+    // shared by all copies
+    private final String[] playerNames;
+    private final Adjacency adjacency;
+    private final int[][] superRegions;      // bonus index -> IDs of the regions in the bonus
+    private final int[] superRegionRewards;  // bonus index -> armies rewarded to the owner of all its regions
+    private final Settings settings;
+    private final int baseArmiesPerTurn;
+    private final boolean endOnElimination;
+
+    private final int[] owners;      // region ID -> index of the owning player, or NEUTRAL
+    private final int[] armies;      // region ID -> armies on the region
+    private final int[] numRegions;  // player index -> number of regions owned
+    private int roundNr;
+    private long hash;               // XOR of the Zobrist keys of the owners and armies of all regions
+
+    // only used while executing moves; created when first needed, and not copied
+    private RoundBuffers roundBuffers;
+    private MoveQueue moveQueue;
+    private Battle battle;
+    private int[] armiesLeft;
+    private VisibilityTracker visibility;  // kept up to date with every change of owner once created
+    private UndoJournal journal;           // records changes while executing moves, if not null
+    private int battleAttackingArmies;     // the armies involved in the last battle, -1 if the
+    private int battleDefendingArmies;     // last attack did not result in a battle
+
+    /**
+     * Creates a state with the owners and armies currently on the given map
+     *
+     * @param playerNames : names of the players, in order of their player index
+     */
+    public GameState(Map map, Settings settings, String... playerNames) {
+        this.playerNames = playerNames.clone();
+        this.adjacency = map.getAdjacency();
+        this.settings = settings;
+        this.baseArmiesPerTurn = settings.getBaseArmiesPerTurn();
+        this.endOnElimination = settings.getEndOnElimination();
+
+        this.superRegions = new int[map.getSuperRegions().size()][];
+        this.superRegionRewards = new int[this.superRegions.length];
+        int i = 0;
+        for (SuperRegion superRegion : map.getSuperRegions()) {
+            this.superRegions[i] = superRegion.getSubRegions().stream().mapToInt(Integer::intValue).toArray();
+            this.superRegionRewards[i] = superRegion.getArmiesReward();
+            i++;
+        }
+
+        this.owners = new int[this.adjacency.getMaxRegionID() + 1];
+        this.armies = new int[this.adjacency.getMaxRegionID() + 1];
+        this.numRegions = new int[playerNames.length];
+        this.roundNr = 0;
+        readFrom(map);
+    }
+
+    private GameState(GameState state) {
+        this.playerNames = state.playerNames;
+        this.adjacency = state.adjacency;
+        this.superRegions = state.superRegions;
+        this.superRegionRewards = state.superRegionRewards;
+        this.settings = state.settings;
+        this.baseArmiesPerTurn = state.baseArmiesPerTurn;
+        this.endOnElimination = state.endOnElimination;
+
+        this.owners = state.owners.clone();
+        this.armies = state.armies.clone();
+        this.numRegions = state.numRegions.clone();
+        this.roundNr = state.roundNr;
+        this.hash = state.hash;
+    }
+
+    /**
+     * @return : an independent copy of this state
+     */
+    public GameState copy() {
+        return new GameState(this);
+    }
+
+    /**
+     * Makes this state equal to the given state, without allocating anything,
+     * e.g. to reset a state to a starting position
+     *
+     * @param state : a state of a game on the same map, with the same number of players
+     */
+    public void copyFrom(GameState state) {
+        if (state.adjacency != this.adjacency || state.numRegions.length != this.numRegions.length) {
+            throw new IllegalArgumentException("Can not copy a state of a different map or number of players");
+        }
+        System.arraycopy(state.owners, 0, this.owners, 0, this.owners.length);
+        System.arraycopy(state.armies, 0, this.armies, 0, this.armies.length);
+        System.arraycopy(state.numRegions, 0, this.numRegions, 0, this.numRegions.length);
+        this.roundNr = state.roundNr;
+        this.hash = state.hash;
+        if (this.visibility != null) {
+            this.visibility.recompute(this.owners);
+        }
+    }
+
+    /**
+     * Sets the owners and armies of all regions to the ones on the given map
+     * (regions owned by someone else than the players of this state are neutral)
+     */
+    public void readFrom(Map map) {
+        Arrays.fill(this.owners, NEUTRAL);
+        Arrays.fill(this.armies, 0);
+        Arrays.fill(this.numRegions, 0);
+        this.hash = computeHash();
+        if (this.visibility != null) {
+            this.visibility.recompute(this.owners);
+        }
+        for (Region region : map.getRegions()) {
+            setRegion(region.getId(), getPlayerIndex(region.getOwnerName()), region.getArmies());
+        }
+    }
+
+    /**
+     * Sets the owners and armies of all regions on the given map to the ones of this state
+     */
+    public void writeTo(Map map) {
+        for (Region region : map.getRegions()) {
+            int owner = this.owners[region.getId()];
+            region.setPlayerName((owner == NEUTRAL) ? Region.OWNER_NEUTRAL : this.playerNames[owner]);
+            region.setArmies(this.armies[region.getId()]);
+        }
+    }
+
+    //===================================================================================
+
+    public int getNumPlayers() {
+        return this.playerNames.length;
+    }
+
+    public String getPlayerName(int player) {
+        return this.playerNames[player];
+    }
+
+    /**
+     * @return : the index of the player with the given name, or NEUTRAL if there is no such player
+     */
+    public int getPlayerIndex(String playerName) {
+        for (int i = 0; i < this.playerNames.length; i++) {
+            if (this.playerNames[i].equals(playerName)) {
+                return i;
+            }
+        }
+        return NEUTRAL;
+    }
+
+    public Adjacency getAdjacency() {
+        return this.adjacency;
+    }
+
+    /**
+     * @return : which regions are visible to which player; created on the first call, and from then on
+     *           updated with every change of owner (copies of the state do not have one until asked)
+     */
+    public VisibilityTracker getVisibility() {
+        if (this.visibility == null) {
+            this.visibility = new VisibilityTracker(this.adjacency, this.playerNames.length);
+            this.visibility.recompute(this.owners);
+        }
+        return this.visibility;
+    }
+
+    public Settings getSettings() {
+        return this.settings;
+    }
+
+    /**
+     * @return : the number of SuperRegions (bonuses), which are numbered from 0
+     */
+    public int getNumSuperRegions() {
+        return this.superRegions.length;
+    }
+
+    /**
+     * @return : the IDs of the regions in the SuperRegion (note: the array is shared, it must not be modified)
+     */
+    public int[] getSuperRegionRegions(int superRegion) {
+        return this.superRegions[superRegion];
+    }
+
+    /**
+     * @return : the armies rewarded each round to the owner of all regions of the SuperRegion
+     */
+    public int getSuperRegionReward(int superRegion) {
+        return this.superRegionRewards[superRegion];
+    }
+
+    /**
+     * @return : index of the player owning the region, or NEUTRAL
+     */
+    public int getOwner(int regionID) {
+        return this.owners[regionID];
+    }
+
+    public int getArmies(int regionID) {
+        return this.armies[regionID];
+    }
+
+    /**
+     * Copies the owners of all regions into the given array, starting at the given offset
+     * (region ID -> player index or NEUTRAL; the IDs not used by the map are NEUTRAL)
+     */
+    public void copyOwnersTo(int[] dest, int offset) {
+        System.arraycopy(this.owners, 0, dest, offset, this.owners.length);
+    }
+
+    /**
+     * Copies the armies of all regions into the given array, starting at the given offset
+     */
+    public void copyArmiesTo(int[] dest, int offset) {
+        System.arraycopy(this.armies, 0, dest, offset, this.armies.length);
+    }
+
+    /**
+     * Changes a region, e.g. to set up a position
+     */
+    public void setRegion(int regionID, int owner, int armies) {
+        changeOwner(regionID, owner);
+        setArmies(regionID, armies);
+    }
+
+    /**
+     * @return : the number of regions owned by the player
+     */
+    public int getNumRegions(int player) {
+        return this.numRegions[player];
+    }
+
+    /**
+     * @return : the number of armies the player gets to place in the next round
+     *           (depending on owned SuperRegions)
+     */
+    public int getIncome(int player) {
+        int income = this.baseArmiesPerTurn;
+        for (int i = 0; i < this.superRegions.length; i++) {
+            if (ownsAll(player, this.superRegions[i])) {
+                income += this.superRegionRewards[i];
+            }
+        }
+        return income;
+    }
+
+    private boolean ownsAll(int player, int[] regionIDs) {
+        for (int regionID : regionIDs) {
+            if (this.owners[regionID] != player) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return : the index of the only player who still owns regions, or -1 if the game is not over
+     */
+    public int getWinner() {
+        int winner = -1;
+        for (int player = 0; player < this.numRegions.length; player++) {
+            if (this.numRegions[player] > 0) {
+                if (winner >= 0) {
+                    return -1;
+                }
+                winner = player;
+            }
+        }
+        return winner;
+    }
+
+    /**
+     * Returns a hash of the owners and armies of all regions, and the round number. The armies the players
+     * get to place follow from the owners, so equal states have equal hashes. The hash is updated with every
+     * change of the state, so this takes constant time.
+     *
+     * Note: the hash does not include the map itself, only compare hashes of states on the same map.
+     */
+    public long getHash() {
+        return this.hash ^ Zobrist.getRoundKey(this.roundNr);
+    }
+
+    private long computeHash() {
+        long hash = 0;
+        for (int regionID = 0; regionID < this.owners.length; regionID++) {
+            hash ^= Zobrist.getOwnerKey(regionID, this.owners[regionID]) ^ Zobrist.getArmiesKey(regionID, this.armies[regionID]);
+        }
+        return hash;
+    }
+
+    /**
+     * @return : the number of rounds executed on this state (and the states it was copied from)
+     */
+    public int getRoundNr() {
+        return this.roundNr;
+    }
+
+    //===================================================================================
+
+    /**
+     * @return : the state after executing a round of moves on this state, which is not changed
+     * @see #applyInPlace(MoveBuffer, SplitMix64, SplitMix64, TurnEvents)
+     */
+    public GameState apply(MoveBuffer moves, SplitMix64 rnd) {
+        return apply(moves, rnd, null);
+    }
+
+    /**
+     * @return : the state after executing a round of moves on this state, which is not changed
+     * @see #applyInPlace(MoveBuffer, SplitMix64, SplitMix64, TurnEvents)
+     */
+    public GameState apply(MoveBuffer moves, SplitMix64 rnd, TurnEvents events) {
+        GameState next = copy();
+        next.applyInPlace(moves, rnd, rnd, events);
+        return next;
+    }
+
+    /**
+     * Executes a round of moves: first all deployments, in the order given, then all attacks/transfers,
+     * in the order of the MoveOrder setting (see MoveQueue): for CYCLE in cycles of one move per player
+     * (the order of players within each cycle is chosen randomly).
+     *
+     * The moves are updated with the result of their execution: illegal moves are marked as such,
+     * and the armies of moves are reduced to the armies that were available.
+     *
+     * @param moves        : the moves of all players for this round
+     * @param moveOrderRnd : random number generator used for ordering the attacks/transfers
+     * @param battleRnd    : random number generator used for battles (may be the same as moveOrderRnd)
+     * @param events       : if not null, cleared and filled with the events of this round
+     */
+    public void applyInPlace(MoveBuffer moves, SplitMix64 moveOrderRnd, SplitMix64 battleRnd,
+            TurnEvents events) {
+        applyInPlace(moves, moveOrderRnd, battleRnd, events, null);
+    }
+
+    /**
+     * Executes a round of moves like applyInPlace(MoveBuffer, SplitMix64, SplitMix64, TurnEvents),
+     * recording all changes in the given journal, so that the round can be rolled back with undo()
+     *
+     * Note: the random number generators can not be rolled back; to replay a round after undoing it,
+     *       use copies of the generators (e.g. from split()) for each try.
+     */
+    public void applyInPlace(MoveBuffer moves, SplitMix64 moveOrderRnd, SplitMix64 battleRnd,
+            TurnEvents events, UndoJournal journal) {
+        if (this.roundBuffers == null) {
+            this.roundBuffers = new RoundBuffers(this.adjacency);
+            this.moveQueue = new MoveQueue(this.playerNames.length, this.settings.getMoveOrder());
+            this.battle = new Battle(this.settings);
+            this.armiesLeft = new int[this.playerNames.length];
+        }
+        if (events != null) {
+            getVisibility();  // the events record which players see the moves
+            events.clear();
+        }
+        this.journal = journal;
+        if (journal != null) {
+            journal.beginFrame(this.roundNr);
+        }
+
+        for (int player = 0; player < this.playerNames.length; player++) {
+            this.armiesLeft[player] = getIncome(player);
+        }
+        for (int i = 0; i < moves.size(); i++) {
+            if (moves.getType(i) == MoveBuffer.TYPE_PLACE_ARMIES) {
+                checkPlaceArmies(moves, i);
+            }
+        }
+        executePlaceArmies(moves, events);
+
+        this.moveQueue.clear(moveOrderRnd);
+        for (int i = 0; i < moves.size(); i++) {
+            if (moves.getType(i) == MoveBuffer.TYPE_ATTACK_TRANSFER) {
+                checkAttackTransfer(moves, i);
+            }
+        }
+        executeAttackTransfer(moves, battleRnd, events);
+
+        this.journal = null;
+        this.roundNr++;
+    }
+
+    /**
+     * Checks if a placeArmies move is legal, and reserves the armies placed
+     */
+    private void checkPlaceArmies(MoveBuffer moves, int i) {
+        int region = moves.getRegion(i);
+        int player = moves.getPlayer(i);
+        int armies = moves.getArmies(i);
+
+        if (!this.adjacency.hasRegion(region)) {
+            moves.markAsIllegal(i, IllegalMoveReason.NON_EXISTING_REGION);
+        } else if (player < 0 || player >= this.playerNames.length) {
+            moves.markAsIllegal(i, IllegalMoveReason.NON_EXISTING_PLAYER);
+        } else if (this.owners[region] == player) {
+            if (armies < 1) {
+                moves.markAsIllegal(i, IllegalMoveReason.LESS_THAN_ONE_ARMY);
+            } else {
+                if (armies > this.armiesLeft[player]) // player wants to place more armies than he has left
+                    moves.setArmies(i, this.armiesLeft[player]); // place all armies he has left
+                if (this.armiesLeft[player] <= 0)
+                    moves.markAsIllegal(i, IllegalMoveReason.NO_ARMIES_LEFT);
+
+                this.armiesLeft[player] -= moves.getArmies(i);
+            }
+        } else {
+            moves.markAsIllegal(i, IllegalMoveReason.NOT_OWNED);
+        }
+    }
+
+    /**
+     * Does the first checks for legality of an attackTransfer move, and queues the move if its player exists
+     */
+    private void checkAttackTransfer(MoveBuffer moves, int i) {
+        int fromRegion = moves.getFromRegion(i);
+        int toRegion = moves.getToRegion(i);
+        int player = moves.getPlayer(i);
+
+        if (!this.adjacency.hasRegion(fromRegion)) {
+            moves.markAsIllegal(i, IllegalMoveReason.NON_EXISTING_FROM_REGION);
+        } else if (!this.adjacency.hasRegion(toRegion)) {
+            moves.markAsIllegal(i, IllegalMoveReason.NON_EXISTING_TO_REGION);
+        } else if (player < 0 || player >= this.playerNames.length) {
+            moves.markAsIllegal(i, IllegalMoveReason.NON_EXISTING_PLAYER);
+        } else if (this.owners[fromRegion] == player) {
+            if (this.adjacency.isNeighbor(fromRegion, toRegion)) {
+                if (moves.getArmies(i) < 1)
+                    moves.markAsIllegal(i, IllegalMoveReason.LESS_THAN_ONE_ARMY);
+            } else
+                moves.markAsIllegal(i, IllegalMoveReason.NOT_A_NEIGHBOR);
+        } else
+            moves.markAsIllegal(i, IllegalMoveReason.NOT_OWNED);
+
+        if (player >= 0 && player < this.playerNames.length) {  // moves of unknown players are dropped
+            this.moveQueue.addAttackTransferMove(player, i);
+        }
+    }
+
+    private void executePlaceArmies(MoveBuffer moves, TurnEvents events) {
+        for (int i = 0; i < moves.size(); i++) {
+            if (moves.getType(i) == MoveBuffer.TYPE_PLACE_ARMIES && moves.isLegalMove(i)) {
+                int region = moves.getRegion(i);
+                setArmies(region, this.armies[region] + moves.getArmies(i));
+                if (events != null) {
+                    events.add(i, getVisibleTo(region));
+                }
+            }
+        }
+    }
+
+    /**
+     * Executes all attackTransfer moves currently in the queue
+     * Does a lot of legality checks and determines whether it is an attack or a transfer.
+     */
+    private void executeAttackTransfer(MoveBuffer moves, SplitMix64 battleRnd, TurnEvents events) {
+        // record the armies as players saw them when they issued orders, and keep track of
+        // attacks/transfers between pairs of regions, to make sure an armies are never
+        // moved/transferred twice between the same regions on a single turn
+        this.roundBuffers.reset(this.armies);
+
+        int moveNr = 1;
+        boolean previousMoveWasIllegal = false;
+        int previousMovePlayer = -1;
+        while (this.moveQueue.hasNextAttackTransferMove()) {
+            int i = this.moveQueue.getNextAttackTransferMove(moveNr, previousMovePlayer, previousMoveWasIllegal);
+
+            int fromRegion = moves.getFromRegion(i);
+            int toRegion   = moves.getToRegion(i);
+            int player     = moves.getPlayer(i);
+
+            // note: only toRegion may change owner as a result of this move
+            int toRegionWasVisibleTo = (events != null) ? getVisibleTo(toRegion) : 0;
+            boolean conquered = false;
+            this.battleAttackingArmies = -1;
+
+            if (moves.isLegalMove(i)) // the move is not illegal
+            {
+                int oldFromArmies = this.roundBuffers.getArmiesAtRoundStart(fromRegion);
+                int oldToArmies   = this.roundBuffers.getArmiesAtRoundStart(toRegion);
+
+                if (this.owners[fromRegion] == player) // check if the fromRegion still belongs to this player
+                {
+                    if (!this.roundBuffers.isEdgeUsed(fromRegion, toRegion)) // each turn there can only be one
+                                                                              // attack/transfer between two regions
+                    {
+                        if (oldFromArmies > 1) // there are still armies that can be used
+                        {
+                            if (oldFromArmies < this.armies[fromRegion]
+                                    && oldFromArmies - 1 < moves.getArmies(i)) // not enough armies on fromRegion
+                                                                               // at the start of the round?
+                                moves.setArmies(i, oldFromArmies - 1); // move the maximal number.
+                            else if (oldFromArmies >= this.armies[fromRegion]
+                                    && this.armies[fromRegion] - 1 < moves.getArmies(i)) // not enough armies on
+                                                                                         // fromRegion currently?
+                                moves.setArmies(i, this.armies[fromRegion] - 1); // move the maximal number.
+
+                            this.roundBuffers.setArmiesAtRoundStart(fromRegion,
+                                    oldFromArmies - moves.getArmies(i)); // update oldFromArmies so new
+                                                                         // armies cannot be used yet
+
+                            if (this.owners[toRegion] == player) // transfer
+                            {
+                                if (this.armies[fromRegion] > 1) {
+                                    setArmies(fromRegion, this.armies[fromRegion] - moves.getArmies(i));
+                                    setArmies(toRegion, this.armies[toRegion] + moves.getArmies(i));
+                                    this.roundBuffers.markEdgeUsed(fromRegion, toRegion);
+                                } else
+                                    moves.markAsIllegal(i, IllegalMoveReason.TRANSFER_FROM_ONE_ARMY);
+                            } else // attack
+                            {
+                                int armiesDestroyed = doAttack(moves, i, battleRnd);
+                                if (armiesDestroyed == 0) { // attack was succes
+                                    // region was taken, so cannot be used anymore, even if it's taken back.
+                                    this.roundBuffers.setArmiesAtRoundStart(toRegion, 1);
+                                    conquered = true;
+                                } else if (armiesDestroyed > 0) { // attack failed
+                                    // armies destroyed and replaced cannot be used again this turn
+                                    this.roundBuffers.setArmiesAtRoundStart(toRegion, oldToArmies - armiesDestroyed);
+                                }
+                                this.roundBuffers.markEdgeUsed(fromRegion, toRegion);
+                            }
+                        } else
+                            moves.markAsIllegal(i, IllegalMoveReason.ALL_ARMIES_USED);
+                    } else
+                        moves.markAsIllegal(i, IllegalMoveReason.ALREADY_MOVED);
+                } else
+                    moves.markAsIllegal(i, IllegalMoveReason.TAKEN_THIS_ROUND);
+            }
+
+            if (events != null) {
+                // note: fromRegion does not change ownership, so no need to check it before the move
+                int visibleTo = getVisibleTo(fromRegion) | getVisibleTo(toRegion) | toRegionWasVisibleTo;
+                if (this.battleAttackingArmies >= 0) {
+                    events.add(i, visibleTo, this.battleAttackingArmies, this.battleDefendingArmies,
+                            this.battle.getDestroyedAttackers(), this.battle.getDestroyedDefenders(), conquered);
+                } else {
+                    events.add(i, visibleTo);
+                }
+            }
+
+            // set some stuff to know what next move to get
+            if (moves.isLegalMove(i)) {
+                previousMoveWasIllegal = false;
+                moveNr++;
+            } else {
+                previousMoveWasIllegal = true;
+            }
+            previousMovePlayer = player;
+
+            if (this.endOnElimination && getWinner() >= 0) {
+                break;  // remaining moves are not executed
+            }
+        }
+    }
+
+    /**
+     * Processes the result of an attack see wiki.warlight.net/index.php/Combat_Basics
+     *
+     * @return : amount of defenders destroyed, used for correcting coming moves
+     */
+    private int doAttack(MoveBuffer moves, int i, SplitMix64 battleRnd) {
+        int fromRegion = moves.getFromRegion(i);
+        int toRegion = moves.getToRegion(i);
+        int attackingArmies;
+        int defendingArmies = this.armies[toRegion];
+
+        int defendersDestroyed = 0;
+        int attackersDestroyed = 0;
+
+        if (this.armies[fromRegion] > 1) {
+            if (this.armies[fromRegion] - 1 >= moves.getArmies(i)) // are there enough armies on fromRegion?
+                attackingArmies = moves.getArmies(i);
+            else
+                attackingArmies = this.armies[fromRegion] - 1;
+
+            this.battle.fight(attackingArmies, defendingArmies, battleRnd);
+            this.battleAttackingArmies = attackingArmies;
+            this.battleDefendingArmies = defendingArmies;
+            attackersDestroyed = this.battle.getDestroyedAttackers();
+            defendersDestroyed = this.battle.getDestroyedDefenders();
+
+            if (attackersDestroyed >= attackingArmies) {
+                if (defendersDestroyed >= defendingArmies)
+                    defendersDestroyed = defendingArmies - 1;
+
+                attackersDestroyed = attackingArmies;
+            }
+
+            // process result of attack
+            if (defendersDestroyed >= defendingArmies) // attack success
+            {
+                setArmies(fromRegion, this.armies[fromRegion] - attackingArmies);
+                changeOwner(toRegion, moves.getPlayer(i));
+                setArmies(toRegion, attackingArmies - attackersDestroyed);
+                return 0;
+
+            } else // attack fail
+            {
+                setArmies(fromRegion, this.armies[fromRegion] - attackersDestroyed);
+                setArmies(toRegion, this.armies[toRegion] - defendersDestroyed);
+                return defendersDestroyed;
+            }
+        } else
+            moves.markAsIllegal(i, IllegalMoveReason.ATTACK_FROM_ONE_ARMY);
+
+        return -1;
+    }
+
+    /**
+     * Rolls back the last round executed with the given journal
+     */
+    public void undo(UndoJournal journal) {
+        journal.undoFrame(this);
+    }
+
+    // used by UndoJournal.undoFrame()
+    void restoreRegion(int regionID, int owner, int armies) {
+        changeOwner(regionID, owner);
+        setArmies(regionID, armies);
+    }
+
+    void restoreRoundNr(int roundNr) {
+        this.roundNr = roundNr;
+    }
+
+    private void setArmies(int regionID, int armies) {
+        if (this.journal != null) {
+            this.journal.record(regionID, this.owners[regionID], this.armies[regionID]);
+        }
+        this.hash ^= Zobrist.getArmiesKey(regionID, this.armies[regionID]) ^ Zobrist.getArmiesKey(regionID, armies);
+        this.armies[regionID] = armies;
+    }
+
+    private void changeOwner(int regionID, int newOwner) {
+        if (this.journal != null) {
+            this.journal.record(regionID, this.owners[regionID], this.armies[regionID]);
+        }
+        int previousOwner = this.owners[regionID];
+        if (previousOwner != NEUTRAL) {
+            this.numRegions[previousOwner]--;
+        }
+        if (newOwner != NEUTRAL) {
+            this.numRegions[newOwner]++;
+        }
+        this.hash ^= Zobrist.getOwnerKey(regionID, previousOwner) ^ Zobrist.getOwnerKey(regionID, newOwner);
+        this.owners[regionID] = newOwner;
+        if (this.visibility != null) {
+            this.visibility.ownerChanged(regionID, previousOwner, newOwner);
+        }
+    }
+
+    /**
+     * @return : bit i is set if the region is visible to player i
+     */
+    private int getVisibleTo(int regionID) {
+        int visibleTo = 0;
+        for (int player = 0; player < this.playerNames.length; player++) {
+            if (this.visibility.isVisible(player, regionID)) {
+                visibleTo |= 1 << player;
+            }
+        }
+        return visibleTo;
+    }
+}
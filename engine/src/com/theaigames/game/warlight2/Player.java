@@ -20,13 +20,15 @@ package com.theaigames.game.warlight2;
 import java.io.IOException;
 
 import com.theaigames.engine.io.IOPlayer;
+import com.theaigames.game.warlight2.bots.BuiltinBot;
 import com.theaigames.game.warlight2.map.Settings;
 
 /**
  * Player class
  *
  * This class stores all the information about the player and handles
- * communication between bot and engine.
+ * communication between bot and engine. The bot is either a bot process,
+ * or a built-in bot which the Processor asks for its moves directly.
  *
  * @author Jim van Eeden <jim@starapple.nl>
  */
@@ -34,7 +36,8 @@ import com.theaigames.game.warlight2.map.Settings;
 public class Player
 {
     private String name;
-    private IOPlayer bot;
+    private IOPlayer bot;          // null for a built-in bot
+    private BuiltinBot builtinBot; // null for a bot process
     private int armiesLeft;    //variable armies that can be added, changes with superRegions fully owned and moves already placed.
     private long timeBank;
     private Settings settings;
@@ -47,6 +50,11 @@ public class Player
         this.settings = settings;
     }
 
+    public Player(String name, BuiltinBot builtinBot, Settings settings) {
+        this(name, (IOPlayer) null, settings);
+        this.builtinBot = builtinBot;
+    }
+
     /**
      * @param n Sets the number of armies this player has left to place
      */
@@ -69,12 +77,30 @@ public class Player
     }
 
     /**
-     * @return The Bot object of this Player
+     * @return The Bot object of this Player, null for a built-in bot
      */
     public IOPlayer getBot() {
         return bot;
     }
 
+    /**
+     * @return The built-in bot of this Player, null for a bot process
+     */
+    public BuiltinBot getBuiltinBot() {
+        return builtinBot;
+    }
+
+    public boolean isBuiltin() {
+        return builtinBot != null;
+    }
+
+    /**
+     * @return true if the bot process has exited on its own (built-in bots never crash)
+     */
+    public boolean hasCrashed() {
+        return bot != null && bot.hasCrashed();
+    }
+
     /**
      * @return The number of armies this Player has left to place on the map
      */
@@ -100,11 +126,14 @@ public class Player
     }
 
     /**
-     * Sends given string to bot
+     * Sends given string to bot, together with all data queued via queueInfo()
      *
      * @param data a string to be sent to the player
      */
     public void sendInfo(String data) {
+        if (bot == null) {
+            return;  // built-in bots read the game state instead
+        }
         try {
             this.bot.sendToPlayer(data);
         } catch (IOException e) {
@@ -112,18 +141,33 @@ public class Player
         }
     }
 
+    /**
+     * Queues given string to be sent to bot with the next sendInfo() call
+     * (normally the next prompt the bot has to reply to)
+     *
+     * @param data a string to be sent to the player
+     */
+    public void queueInfo(String data) {
+        if (bot == null) {
+            return;
+        }
+        try {
+            this.bot.queueToPlayer(data);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
     /**
      * Waits for some input from the bot and returns the received string.
+     * Only the time since the bot has received the prompt is taken from the time bank.
      *
      * @return the bot's output
      */
     public String getResponse() {
-        long startTime = System.currentTimeMillis();
-
         String response = this.bot.getResponse(this.getTimeBank());
 
-        long timeElapsed = System.currentTimeMillis() - startTime;
-        updateTimeBank(timeElapsed);
+        updateTimeBank(this.bot.getLastResponseTime());
 
         return response;
     }
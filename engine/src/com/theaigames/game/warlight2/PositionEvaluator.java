@@ -0,0 +1,241 @@
+// Copyright 2015 theaigames.com (developers@theaigames.com)
+
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+
+//        http://www.apache.org/licenses/LICENSE-2.0
+
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+//    For the full copyright and license information, please view the LICENSE
+//    file that was distributed with this source code.
+
+
+package com.theaigames.game.warlight2;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import com.theaigames.game.warlight2.bots.BuiltinBot;
+import com.theaigames.game.warlight2.bots.Policy;
+import com.theaigames.game.warlight2.map.Map;
+import com.theaigames.game.warlight2.map.MapJSON;
+import com.theaigames.game.warlight2.map.Settings;
+import com.theaigames.game.warlight2.move.MoveBuffer;
+
+/**
+ * PositionEvaluator class
+ *
+ * Estimates the chances of the players in a position by playing it out many times with
+ * built-in policies (Monte Carlo). The play-outs are divided over the threads of a ForkJoinPool.
+ *
+ * The results are reproducible: they depend only on the position, the policies and the seed,
+ * not on the number of threads.
+ */
+
+public class PositionEvaluator
+{
+    private static final int PLAYOUTS_PER_TASK = 32;
+
+    private final GameState position;
+    private final Policy[] policies;
+    private final int maxRounds;
+    private final ForkJoinPool pool;
+
+    public PositionEvaluator(GameState position, int maxRounds, Policy... policies) {
+        this(position, maxRounds, ForkJoinPool.commonPool(), policies);
+    }
+
+    /**
+     * @param position  : the position to evaluate (is copied)
+     * @param maxRounds : number of rounds after which a play-out is stopped (and counted as a draw)
+     * @param policies  : player index -> the policy playing for the player
+     */
+    public PositionEvaluator(GameState position, int maxRounds, ForkJoinPool pool, Policy... policies) {
+        if (policies.length != position.getNumPlayers()) {
+            throw new IllegalArgumentException("Expected a policy for each of the " + position.getNumPlayers() + " players");
+        }
+        this.position = position.copy();
+        this.policies = policies.clone();
+        this.maxRounds = maxRounds;
+        this.pool = pool;
+    }
+
+    /**
+     * Plays out the position numPlayouts times
+     */
+    public Result evaluate(int numPlayouts, long seed) {
+        long[] counts = this.pool.invoke(new PlayoutTask(0, numPlayouts, new SplitMix64(seed)));
+        return new Result(numPlayouts, counts);
+    }
+
+    /**
+     * Plays out the state (in place) until one player is left or maxRounds rounds have been played
+     *
+     * @return : index of the winning player, or -1 for a draw
+     */
+    private int playout(GameState state, MoveBuffer moves, SplitMix64 rnd) {
+        for (int round = 0; round < this.maxRounds; round++) {
+            moves.clear();
+            for (int player = 0; player < this.policies.length; player++) {
+                this.policies[player].getMoves(state, player, rnd, moves);
+            }
+            state.applyInPlace(moves, rnd, rnd, null);
+
+            int winner = state.getWinner();
+            if (winner >= 0) {
+                return winner;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Plays out a range of play-outs, and returns the number of wins of each player, followed by the number of draws
+     */
+    private class PlayoutTask extends RecursiveTask<long[]>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final SplitMix64 rnd;
+
+        PlayoutTask(int from, int to, SplitMix64 rnd) {
+            this.from = from;
+            this.to = to;
+            this.rnd = rnd;
+        }
+
+        @Override
+        protected long[] compute() {
+            if (this.to - this.from > PLAYOUTS_PER_TASK) {
+                int middle = (this.from + this.to) >>> 1;
+                PlayoutTask left = new PlayoutTask(this.from, middle, this.rnd.split());
+                PlayoutTask right = new PlayoutTask(middle, this.to, this.rnd);
+                left.fork();
+                long[] counts = right.compute();
+                long[] leftCounts = left.join();
+                for (int i = 0; i < counts.length; i++) {
+                    counts[i] += leftCounts[i];
+                }
+                return counts;
+            }
+
+            int numPlayers = position.getNumPlayers();
+            long[] counts = new long[numPlayers + 1];
+            GameState state = position.copy();
+            MoveBuffer moves = new MoveBuffer(64);
+            for (int i = this.from; i < this.to; i++) {
+                state.copyFrom(position);
+                int winner = playout(state, moves, this.rnd);
+                counts[(winner >= 0) ? winner : numPlayers]++;
+            }
+            return counts;
+        }
+    }
+
+    //===================================================================================
+
+    /**
+     * Result class
+     *
+     * The outcomes of the play-outs of a position
+     */
+    public static class Result
+    {
+        private final int numPlayouts;
+        private final long[] counts;  // wins of each player, followed by the draws
+
+        Result(int numPlayouts, long[] counts) {
+            this.numPlayouts = numPlayouts;
+            this.counts = counts;
+        }
+
+        public int getNumPlayouts() {
+            return this.numPlayouts;
+        }
+
+        public long getWins(int player) {
+            return this.counts[player];
+        }
+
+        public long getDraws() {
+            return this.counts[this.counts.length - 1];
+        }
+
+        /**
+         * @return : the fraction of play-outs won by the player
+         */
+        public double getWinProbability(int player) {
+            return (double) this.counts[player] / this.numPlayouts;
+        }
+
+        /**
+         * Wilson score interval for the win probability of the player
+         *
+         * @param z : the number of standard deviations, e.g. 1.96 for a 95% interval
+         * @return : the lower and upper bound of the interval
+         */
+        public double[] getConfidenceInterval(int player, double z) {
+            double n = this.numPlayouts;
+            double p = getWinProbability(player);
+            double denominator = 1 + z * z / n;
+            double center = (p + z * z / (2 * n)) / denominator;
+            double halfWidth = z * Math.sqrt(p * (1 - p) / n + z * z / (4 * n * n)) / denominator;
+            return new double[] { Math.max(0, center - halfWidth), Math.min(1, center + halfWidth) };
+        }
+    }
+
+    //===================================================================================
+
+    /**
+     * Evaluates a position with play-outs, and prints the win probability of each player
+     *
+     * @param args : the map file, the standing file (a JSON array of regions as written by
+     *               MapJSON.getStandingsJSON(), with players "player1" and "player2"), the settings file,
+     *               the number of play-outs, and optionally a seed, the maximum number of rounds per play-out
+     *               and the policy both players use (see BuiltinBot.forName(), "random" by default)
+     */
+    public static void main(String args[]) throws IOException {
+        Map map = MapJSON.createMap(new JSONObject(readFile(args[0])));
+        MapJSON.applyStandings(map, new JSONArray(readFile(args[1])));
+        Settings settings = new File(args[2]).isFile() ? new Settings(new JSONObject(readFile(args[2]))) : new Settings();
+        int numPlayouts = Integer.parseInt(args[3]);
+        long seed = (args.length > 4) ? Long.parseLong(args[4]) : new SplittableRandom().nextLong();
+        int maxRounds = (args.length > 5) ? Integer.parseInt(args[5]) : settings.getMaxRounds(map.getRegions().size());
+
+        GameState position = new GameState(map, settings, "player1", "player2");
+        Policy policy = BuiltinBot.forName((args.length > 6) ? args[6] : "random");
+        PositionEvaluator evaluator = new PositionEvaluator(position, maxRounds, policy, policy);
+
+        long timeStart = System.currentTimeMillis();
+        Result result = evaluator.evaluate(numPlayouts, seed);
+        long timeElapsed = System.currentTimeMillis() - timeStart;
+
+        System.out.format("%d play-outs of at most %d rounds (seed %d) in %d ms\n", numPlayouts, maxRounds, seed, timeElapsed);
+        for (int player = 0; player < position.getNumPlayers(); player++) {
+            double[] interval = result.getConfidenceInterval(player, 1.96);
+            System.out.format("%s: wins %.4f (95%% interval %.4f - %.4f)\n", position.getPlayerName(player),
+                    result.getWinProbability(player), interval[0], interval[1]);
+        }
+        System.out.format("draws: %.4f\n", (double) result.getDraws() / numPlayouts);
+    }
+
+    private static String readFile(String fileName) throws IOException {
+        return new String(Files.readAllBytes(new File(fileName).toPath()), StandardCharsets.UTF_8);
+    }
+}
@@ -17,14 +17,15 @@
 
 package com.theaigames.game.warlight2;
 
-import java.util.LinkedList;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Set;
 import java.util.List;
 import java.util.Iterator;
 import java.util.HashSet;
 import java.util.HashMap;
-import java.util.Random;
 
 //import com.theaigames.game.warlight2.botapi.CommunicationV1;
 import com.theaigames.game.warlight2.botapi.CommunicationAiGames;
@@ -32,9 +33,11 @@ import com.theaigames.game.warlight2.map.Map;
 import com.theaigames.game.warlight2.map.Settings;
 import com.theaigames.game.warlight2.map.Region;
 import com.theaigames.game.warlight2.map.SuperRegion;
+import com.theaigames.game.warlight2.map.VisibilityTracker;
+import com.theaigames.game.warlight2.map.VisibleMapView;
 import com.theaigames.game.warlight2.move.AttackTransferMove;
 import com.theaigames.game.warlight2.move.Move;
-import com.theaigames.game.warlight2.move.MoveQueue;
+import com.theaigames.game.warlight2.move.MoveBuffer;
 import com.theaigames.game.warlight2.move.PlaceArmiesMove;
 
 /**
@@ -51,17 +54,28 @@ public class Processor
 
     private Map map;
     private Settings settings;
-    private Random gameplayRnd;
-    private Random mapGenerationRnd;
+    private SplitMix64 gameplayRnd;       // battles and first pick
+    private SplitMix64 moveOrderRnd;      // order of attack/transfer moves
+    private SplitMix64 mapGenerationRnd;  // wastelands, pickable regions and random picks
+    private SplitMix64 builtinBotRnd;     // choices of built-in bots (null if there are none)
 
     private BotCommunication communication;
 
     private int maxRounds;
     private int roundNr;
 
-    private HashMap<Player, LinkedList<Move>> visiblePrevTurnMoves;
+    private HashMap<Player, ArrayList<Move>> visiblePrevTurnMoves;
+    private HashMap<Player, VisibleMapView> visibleMaps;
 
-    private MoveQueue moveQueue;
+    private GameState state;             // executes the moves; in sync with the map between rounds
+    private MoveBuffer orders;           // moves of the current round, in the order they were received
+    private ArrayList<Move> orderMoves;  // the Move objects the orders were created from
+    private TurnEvents events;           // results of executing the moves of the current round
+    private HashMap<Player, GameState> builtinBotViews;  // the state as seen by each built-in bot
+
+    private PrintStream log;  // where the course of the game (picks, battles) is printed, null for nowhere
+    private ReplayWriter replayWriter;  // null if no replay is written
+    private FeatureWriter featureWriter;  // null if no features are exported
 
     private Set<Integer> wastelands;
     private Set<Integer> pickableStartingRegions;
@@ -70,7 +84,7 @@ public class Processor
     private HashMap<Player, Set<Integer>> playerStartingRegions;
     private Player firstPickPlayer;
 
-    public Processor(Map initMap, Settings settings, Random gameplayRnd, Random mapGenerationRnd,
+    public Processor(Map initMap, Settings settings, SplitMix64 gameplayRnd, SplitMix64 mapGenerationRnd,
             Player player1, Player player2) {
         this.map = initMap;
         this.settings = settings;
@@ -90,7 +104,11 @@ public class Processor
 
         this.player1 = player1;
         this.player2 = player2;
-        moveQueue = new MoveQueue(player1, player2);
+        moveOrderRnd = gameplayRnd.split();  // a separate stream for move ordering
+        if (player1.isBuiltin() || player2.isBuiltin()) {
+            // only split off when needed, so that games between bot processes are not affected
+            builtinBotRnd = gameplayRnd.split();
+        }
 
         this.playerPickedRegions = new HashMap<>();
         this.playerStartingRegions = new HashMap<>();
@@ -99,8 +117,42 @@ public class Processor
         this.communication = new CommunicationAiGames(settings, map);
 
         visiblePrevTurnMoves = new HashMap<>();
-        visiblePrevTurnMoves.put(player1, new LinkedList<Move>());
-        visiblePrevTurnMoves.put(player2, new LinkedList<Move>());
+        visiblePrevTurnMoves.put(player1, new ArrayList<Move>());
+        visiblePrevTurnMoves.put(player2, new ArrayList<Move>());
+
+        visibleMaps = new HashMap<>();
+        visibleMaps.put(player1, new VisibleMapView(map, settings));
+        visibleMaps.put(player2, new VisibleMapView(map, settings));
+
+        orders = new MoveBuffer(64);
+        orderMoves = new ArrayList<>();
+        events = new TurnEvents();
+        builtinBotViews = new HashMap<>();
+        log = System.out;
+    }
+
+    /**
+     * Sets where the course of the game (picks, battles) is printed, System.out by default
+     * (e.g. to run many games at the same time), or null to not print it at all
+     */
+    public void setLog(PrintStream log) {
+        this.log = log;
+    }
+
+    /**
+     * Makes the processor record the game in a replay (the header of the replay must already be written).
+     * The replay is not closed by the processor.
+     */
+    public void setReplayWriter(ReplayWriter replayWriter) {
+        this.replayWriter = replayWriter;
+    }
+
+    /**
+     * Makes the processor export the features of every round it plays. The feature writer is not closed
+     * by the processor.
+     */
+    public void setFeatureWriter(FeatureWriter featureWriter) {
+        this.featureWriter = featureWriter;
     }
 
     /**
@@ -213,11 +265,34 @@ public class Processor
 
         int numStartingTerritories = settings.getNumberOfStartingTerritories();
 
-        this.playerPickedRegions.put(player1,
-                communication.sendPickInfoAndRequestStartingPicks(player1, numStartingTerritories, this.pickableStartingRegions));
+        List<Integer> player1Picks = requestStartingPicks(player1, numStartingTerritories);
+
+        List<Integer> player2Picks = requestStartingPicks(player2, numStartingTerritories);
 
-        this.playerPickedRegions.put(player2,
-                communication.sendPickInfoAndRequestStartingPicks(player2, numStartingTerritories, this.pickableStartingRegions));
+        distributeStartingRegions(player1Picks, player2Picks);
+    }
+
+    /**
+     * Starts the game like getPicksAndInitGame(), but with the given picks instead of asking the players
+     * for them (e.g. to re-play a game from its replay): nothing is sent to the players.
+     *
+     * @param player1Picks : the regions picked by player 1, in the order the player prefers them
+     * @param player2Picks : the same for player 2
+     */
+    public void initGame(List<Integer> player1Picks, List<Integer> player2Picks) {
+        distributeStartingRegions(player1Picks, player2Picks);
+    }
+
+    private void distributeStartingRegions(List<Integer> player1Picks, List<Integer> player2Picks) {
+
+        this.playerPickedRegions.put(player1, player1Picks);
+
+        this.playerPickedRegions.put(player2, player2Picks);
+
+        if (replayWriter != null) {
+            replayWriter.writePicks(0, this.playerPickedRegions.get(player1));
+            replayWriter.writePicks(1, this.playerPickedRegions.get(player2));
+        }
 
         // iterators to go through the picks in the order they are selected
         HashMap<Player, Iterator<Integer>> playerPicksItr = new HashMap<>();
@@ -264,8 +339,10 @@ public class Processor
                         // for the record only, add to the list of player's starting regions
                         playerStartingRegions.get(picksThisIteration).add(nextPick);
 
-                        System.out.format("Player [%s] received starting territory [%d] (%s)%n",
-                                picksThisIteration.getName(), nextPick, selectedRegion.getName());
+                        if (log != null) {
+                            log.format("Player [%s] received starting territory [%d] (%s)%n",
+                                    picksThisIteration.getName(), nextPick, selectedRegion.getName());
+                        }
 
                         teritorySelected = true;
                     }
@@ -274,7 +351,43 @@ public class Processor
             iter++;
         }
 
-        System.out.format("All starting territories have been assigned%n");
+        if (log != null) {
+            log.format("All starting territories have been assigned%n");
+        }
+
+        // from now on all changes to the map are done by executing moves on the game state
+        state = new GameState(map, settings, player1.getName(), player2.getName());
+        if (replayWriter != null) {
+            replayWriter.writeStart(1, state);
+        }
+    }
+
+    /**
+     * Gets the prefered picks of the player: from the bot process, or directly from a built-in bot
+     * (with the same limits: only valid picks, at most twice the number of starting regions)
+     */
+    private List<Integer> requestStartingPicks(Player player, int numStartingTerritories) {
+        if (!player.isBuiltin()) {
+            return communication.sendPickInfoAndRequestStartingPicks(player, numStartingTerritories, this.pickableStartingRegions);
+        }
+
+        GameState pickState = new GameState(map, settings, player1.getName(), player2.getName());
+        int[] pickableRegions = this.pickableStartingRegions.stream().mapToInt(Integer::intValue).sorted().toArray();
+        int[] preferredRegions = player.getBuiltinBot().getStartingPicks(pickState,
+                pickState.getPlayerIndex(player.getName()), pickableRegions, builtinBotRnd);
+
+        List<Integer> picks = new ArrayList<>();
+        for (int regionID : preferredRegions) {
+            if (picks.size() < numStartingTerritories * 2 && this.pickableStartingRegions.contains(regionID)
+                    && !picks.contains(regionID)) {
+                picks.add(regionID);
+            }
+        }
+        if (log != null) {
+            log.format("Player [%s] selected the following valid regions: %s%n",
+                    player.getName(), Arrays.toString(picks.toArray()));
+        }
+        return picks;
     }
 
     private Player decideWhoGetsFirstPick() {
@@ -310,358 +423,214 @@ public class Processor
         recalculateStartingArmies();  // calculate how much armies the players get at the start of the
                                       // round (depending on owned SuperRegions and territories)
 
-        communication.sendTurnStartUpdate(player1, visiblePrevTurnMoves.get(player1), map.getVisibleMapCopyForPlayer(player1, settings));
-        communication.sendTurnStartUpdate(player2, visiblePrevTurnMoves.get(player2), map.getVisibleMapCopyForPlayer(player2, settings));
+        updateVisibleMaps();
+        if (featureWriter != null) {
+            featureWriter.writeRoundStart(roundNr, state, visibleMaps.get(player1), visibleMaps.get(player2));
+        }
+
+        sendTurnStartUpdate(player1);
+        sendTurnStartUpdate(player2);
 
-        // FIXME: replce global queues with a new queue for each turn
-        //        (for the moveQueue, possibly separate queues for PlaceArmies and MoveAttack moves)
+        // note: the queues are cleared rather than re-created, so their storage is re-used every round
         visiblePrevTurnMoves.get(player1).clear();
         visiblePrevTurnMoves.get(player2).clear();
-        moveQueue.clear();
+        orders.clear();
+        orderMoves.clear();
 
         getPlaceArmyMoves(player1);
         getPlaceArmyMoves(player2);
 
-        executePlaceArmies();
-
         getAttackTransferMoves(player1);
         getAttackTransferMoves(player2);
 
-        executeAttackTransfer();
+        executeMoves();
 
         roundNr++;
     }
 
     /**
-     * Queries the player for deployments, and places the orders received into the move queue.
+     * Plays one round with the given orders instead of asking the players for their moves (e.g. to re-play
+     * a game from its replay): the game continues as if the players had given these orders, but nothing is
+     * sent to the players, and the moves visible to them are not collected.
      *
-     * @param player : player to ask for deployments
+     * @param roundOrders : the orders of both players, in the order they were received
      */
-    private void getPlaceArmyMoves(Player player) {
-        List<PlaceArmiesMove> deployments = communication.requestPlaceArmiesMoves(player);
+    public void playRound(int roundNumber, MoveBuffer roundOrders) {
+        this.roundNr = roundNumber;
 
-        for (PlaceArmiesMove move : deployments) {
-            queuePlaceArmies(move);
+        recalculateStartingArmies();
+        if (featureWriter != null) {
+            updateVisibleMaps();
+            featureWriter.writeRoundStart(roundNr, state, visibleMaps.get(player1), visibleMaps.get(player2));
         }
+
+        visiblePrevTurnMoves.get(player1).clear();
+        visiblePrevTurnMoves.get(player2).clear();
+        orders.copyFrom(roundOrders);
+        orderMoves.clear();
+
+        applyOrders();
+
+        roundNr++;
     }
 
-    /**
-     * Queries the player for attack/transfer moves, and places the orders received into the move queue.
-     *
-     * @param player : player to ask for moves and transfers
-     */
-    private void getAttackTransferMoves(Player player) {
-        List<AttackTransferMove> orders = communication.requestAttackTransferMoves(player);
+    private void updateVisibleMaps() {
+        VisibilityTracker visibility = state.getVisibility();
+        visibleMaps.get(player1).update(visibility, state.getPlayerIndex(player1.getName()));
+        visibleMaps.get(player2).update(visibility, state.getPlayerIndex(player2.getName()));
+    }
 
-        for (AttackTransferMove move : orders) {
-            queueAttackTransfer(move);
+    private void sendTurnStartUpdate(Player player) {
+        if (!player.isBuiltin()) {  // built-in bots get the state when they are asked for moves
+            communication.sendTurnStartUpdate(player, visiblePrevTurnMoves.get(player), visibleMaps.get(player));
         }
     }
 
     /**
-     * Queues the placeArmies moves given by the player Checks if the moves are legal
+     * Queries the player for deployments, and adds the orders received to this round's moves.
+     * A built-in bot is asked for all its moves (deployments and attacks/transfers) at once.
      *
-     * @param plm : placeArmiesMove to be queued
+     * @param player : player to ask for deployments
      */
-    private void queuePlaceArmies(PlaceArmiesMove plm) {
-        // should not ever happen
-        if (plm == null) {
-            System.err.println("Error on place_armies input.");
+    private void getPlaceArmyMoves(Player player) {
+        if (player.isBuiltin()) {
+            getBuiltinBotMoves(player);
             return;
         }
+        List<PlaceArmiesMove> deployments = communication.requestPlaceArmiesMoves(player);
 
-        Region region = map.getRegion(plm.getRegion());
-        Player player = getPlayer(plm.getPlayerName());
-        int armies = plm.getArmies();
-
-        // check legality
-        if (region == null)  {
-            plm.markAsIllegal(" place-armies " + "for non-existing region " + plm.getRegion());
-        } else if (player == null) {
-            plm.markAsIllegal(" place-armies " + "for non-existing player " + plm.getPlayerName());
-        } else if (region.ownedByPlayer(player.getName())) {
-            if (armies < 1) {
-                plm.markAsIllegal(" place-armies " + "cannot place less than 1 army");
-            } else {
-                if (armies > player.getArmiesLeft()) // player wants to place more armies than he has left
-                    plm.setArmies(player.getArmiesLeft()); // place all armies he has left
-                if (player.getArmiesLeft() <= 0)
-                    plm.markAsIllegal(" place-armies " + "no armies left to place");
-
-                player.setArmiesLeft(player.getArmiesLeft() - plm.getArmies());
+        for (PlaceArmiesMove move : deployments) {
+            // should not ever happen
+            if (move == null) {
+                System.err.println("Error on place_armies input.");
+                continue;
             }
-        } else {
-            plm.markAsIllegal(plm.getRegion() + " place-armies " + " not owned");
+            addOrder(move);
         }
-
-        moveQueue.addMove(plm);
     }
 
     /**
-     * Queues the attackTransfer moves given by the player Does the first checks for legality
+     * Queries the player for attack/transfer moves, and adds the orders received to this round's moves.
      *
-     * @param atm : attackTransferMove to be queued
+     * @param player : player to ask for moves and transfers
      */
-    private void queueAttackTransfer(AttackTransferMove atm) {
-        // should not ever happen
-        if (atm == null) {
-            System.err.println("Error on attack/transfer input.");
-            return;
+    private void getAttackTransferMoves(Player player) {
+        if (player.isBuiltin()) {
+            return;  // already added by getPlaceArmyMoves()
         }
+        List<AttackTransferMove> orders = communication.requestAttackTransferMoves(player);
 
-        Region fromRegion = map.getRegion(atm.getFromRegion());
-        Region toRegion = map.getRegion(atm.getToRegion());
-        Player player = getPlayer(atm.getPlayerName());
-        int armies = atm.getArmies();
-
-        // check legality
-        if (fromRegion == null)  {
-            atm.markAsIllegal(" attack/transfer " + " from non-existing region " + atm.getFromRegion());
-        } else if (toRegion == null) {
-            atm.markAsIllegal(" attack/transfer " + " to non-existing region " + atm.getToRegion());
-        } else if (player == null) {
-            atm.markAsIllegal(" attack/transfer " + " for non-existing player " + atm.getPlayerName());
-        }else if (fromRegion.ownedByPlayer(player.getName())) {
-            if (fromRegion.isNeighbor(toRegion)) {
-                if (armies < 1)
-                    atm.markAsIllegal(" attack/transfer " + "cannot use less than 1 army");
-            } else
-                atm.markAsIllegal(atm.getToRegion() + " attack/transfer " + "not a neighbor");
-        } else
-            atm.markAsIllegal(atm.getFromRegion() + " attack/transfer " + "not owned");
-
-        moveQueue.addMove(atm);
+        for (AttackTransferMove move : orders) {
+            // should not ever happen
+            if (move == null) {
+                System.err.println("Error on attack/transfer input.");
+                continue;
+            }
+            addOrder(move);
+        }
     }
 
     /**
-     * Executes all placeArmies move currently in the queue Moves have already been checked if they are legal Also stores the
-     * moves for the visualizer
+     * Asks a built-in bot for its moves, on a copy of the state which shows no more than a bot process
+     * would see: regions whose owner is fogged are neutral, and fogged armies are replaced by the
+     * default number of neutral armies
      */
-    private void executePlaceArmies() {
-        Set<Integer> visibleRegionsPlayer1 = map.visibleRegionsForPlayer(player1);
-        Set<Integer> visibleRegionsPlayer2 = map.visibleRegionsForPlayer(player2);
-
-        for (PlaceArmiesMove move : moveQueue.placeArmiesMoves) {
-            Region region = map.getRegion(move.getRegion());
-            if (region == null)
-                continue;
-
-            if (move.isLegalMove()) { // the move is not illegal
-                region.setArmies(region.getArmies() + move.getArmies());
-
-                if (visibleRegionsPlayer1.contains(region.getId())) {
-                    visiblePrevTurnMoves.get(player1).add(move); // for the visible_moves/opponent_moves output
-                }
-                if (visibleRegionsPlayer2.contains(region.getId())) {
-                    visiblePrevTurnMoves.get(player2).add(move); // for the visible_moves/opponent_moves output
-                }
+    private void getBuiltinBotMoves(Player player) {
+        GameState view = builtinBotViews.computeIfAbsent(player, p -> state.copy());
+        view.copyFrom(state);
+        VisibleMapView visibleMap = visibleMaps.get(player);
+        for (Region region : map.getRegions()) {
+            if (visibleMap.isOwnerFogged(region)) {
+                view.setRegion(region.getId(), GameState.NEUTRAL, settings.getNeutralArmies());
+            } else if (visibleMap.isFogged(region)) {
+                view.setRegion(region.getId(), view.getOwner(region.getId()), settings.getNeutralArmies());
             }
         }
+
+        String[] playerNames = { player1.getName(), player2.getName() };
+        int firstOrder = orders.size();
+        player.getBuiltinBot().getMoves(view, state.getPlayerIndex(player.getName()), builtinBotRnd, orders);
+        for (int i = firstOrder; i < orders.size(); i++) {
+            orderMoves.add(orders.toMove(i, playerNames));
+        }
+    }
+
+    private void addOrder(Move move) {
+        orders.add(move, state.getPlayerIndex(move.getPlayerName()));
+        orderMoves.add(move);
     }
 
     /**
-     * Executes all attackTransfer moves currently in the queue
-     * Does a lot of legality checks and determines whether it is an attack or a transfer.
-     * Also stores the moves for the visualizer
+     * Executes all moves of this round (see GameState for the rules), updates the map and stores
+     * the moves visible to each player for the visible_moves/opponent_moves output
      */
-    private void executeAttackTransfer() {
-        Map mapAtTurnStart = map.clone(); // this is the map as players saw it when they issued orders
-
-        Set<Integer> visibleRegionsPlayer1OldMap = mapAtTurnStart.visibleRegionsForPlayer(player1);
-        Set<Integer> visibleRegionsPlayer2OldMap = mapAtTurnStart.visibleRegionsForPlayer(player2);
-
-        // for each attack/transfer from region with ID X to a region with ID Y has an element "X_Y",
-        // to make sure an armies are never moved/transferred twice between the same regions on a single turn
-        Set<String> usedTransfers = new HashSet<>();
-
-        int moveNr = 1;
-        Boolean previousMoveWasIllegal = false;
-        String previousMovePlayer = "";
-        while (moveQueue.hasNextAttackTransferMove()) {
-            AttackTransferMove move = moveQueue.getNextAttackTransferMove(moveNr, previousMovePlayer,
-                    previousMoveWasIllegal);
-
-            Region fromRegion = map.getRegion(move.getFromRegion());
-            Region toRegion   = map.getRegion(move.getToRegion());
-
-            if (move.isLegalMove()) // the move is not illegal
-            {
-                Region oldFromRegion = mapAtTurnStart.getRegion(move.getFromRegion());
-                Region oldToRegion   = mapAtTurnStart.getRegion(move.getToRegion());
-                Player player        = getPlayer(move.getPlayerName());
-
-                if (fromRegion.ownedByPlayer(player.getName())) // check if the fromRegion still belongs to this player
-                {
-                    if (!usedTransfers.contains(fromRegion.getId() + "_" + toRegion.getId())) // each turn there can only be one
-                                                                                              // attack/transfer between two regions
-                    {
-                        if (oldFromRegion.getArmies() > 1) // there are still armies that can be used
-                        {
-                            if (oldFromRegion.getArmies() < fromRegion.getArmies()
-                                    && oldFromRegion.getArmies() - 1 < move.getArmies()) // not enough armies on fromRegion
-                                                                                         // at the start of the round?
-                                move.setArmies(oldFromRegion.getArmies() - 1); // move the maximal number.
-                            else if (oldFromRegion.getArmies() >= fromRegion.getArmies()
-                                    && fromRegion.getArmies() - 1 < move.getArmies()) // not enough armies on fromRegion
-                                                                                      // currently?
-                                move.setArmies(fromRegion.getArmies() - 1); // move the maximal number.
-
-                            oldFromRegion.setArmies(oldFromRegion.getArmies() - move.getArmies()); // update
-                                                                                                   // oldFromRegion so
-                                                                                                   // new armies cannot
-                                                                                                   // be used yet
-
-                            if (toRegion.ownedByPlayer(player.getName())) // transfer
-                            {
-                                if (fromRegion.getArmies() > 1) {
-                                    fromRegion.setArmies(fromRegion.getArmies() - move.getArmies());
-                                    toRegion.setArmies(toRegion.getArmies() + move.getArmies());
-                                    usedTransfers.add(fromRegion.getId() + "_" + toRegion.getId());
-                                } else
-                                    move.markAsIllegal(move.getFromRegion() + " transfer " + "only has 1 army");
-                            } else // attack
-                            {
-                                int armiesDestroyed = doAttack(move);
-                                if (armiesDestroyed == 0) { // attack was succes
-                                    oldToRegion.setArmies(1); // region was taken, so cannot be used anymore, even if
-                                                             // it's taken back.
-                                } else if (armiesDestroyed > 0) { // attack failed
-                                    oldToRegion.setArmies(oldToRegion.getArmies() - armiesDestroyed); // armies
-                                                                                                      // destroyed and
-                                                                                                      // replaced cannot
-                                                                                                      // be used again
-                                                                                                      // this turn
-                                }
-                                usedTransfers.add(fromRegion.getId() + "_" + toRegion.getId());
-                            }
-                        } else
-                            move.markAsIllegal(move.getFromRegion() + " attack/transfer "
-                                    + "has used all available armies");
-                    } else
-                        move.markAsIllegal(move.getFromRegion() + " attack/transfer "
-                                + "has already attacked/transfered to this region");
-                } else
-                    move.markAsIllegal(move.getFromRegion() + " attack/transfer " + "was taken this round");
-            }
+    private void executeMoves() {
+        applyOrders();
 
-            Set<Integer> visibleRegionsPlayer1Map = map.visibleRegionsForPlayer(player1);
-            Set<Integer> visibleRegionsPlayer2Map = map.visibleRegionsForPlayer(player2);
+        // the moves are sent to the players as they were executed (e.g. with reduced armies)
+        for (int i = 0; i < orders.size(); i++) {
+            orders.copyResultTo(i, orderMoves.get(i));
+        }
 
-            if (visibleRegionsPlayer1Map.contains(fromRegion.getId())
-                    || visibleRegionsPlayer1Map.contains(toRegion.getId())
-                    || visibleRegionsPlayer1OldMap.contains(toRegion.getId())) {
-                // note: froRegion does not change owenrship, so no need otcheck old map if we checked new map
-                visiblePrevTurnMoves.get(player1).add(move); // for the visible_moves/opponent_moves output
-            }
-            if (visibleRegionsPlayer2Map.contains(fromRegion.getId())
-                    || visibleRegionsPlayer2Map.contains(toRegion.getId())
-                    || visibleRegionsPlayer2OldMap.contains(toRegion.getId())) {
-                visiblePrevTurnMoves.get(player2).add(move); // for the visible_moves/opponent_moves output
+        for (int e = 0; e < events.size(); e++) {
+            Move move = orderMoves.get(events.getMoveIndex(e));
+            if (events.isVisibleTo(e, 0)) {
+                visiblePrevTurnMoves.get(player1).add(move);
             }
-
-            visibleRegionsPlayer1OldMap = visibleRegionsPlayer1Map;
-            visibleRegionsPlayer2OldMap = visibleRegionsPlayer2Map;
-
-            // set some stuff to know what next move to get
-            if (move.isLegalMove()) {
-                previousMoveWasIllegal = false;
-                moveNr++;
-            } else {
-                previousMoveWasIllegal = true;
+            if (events.isVisibleTo(e, 1)) {
+                visiblePrevTurnMoves.get(player2).add(move);
             }
-            previousMovePlayer = move.getPlayerName();
         }
     }
 
     /**
-     * Processes the result of an attack see wiki.warlight.net/index.php/Combat_Basics
-     *
-     * @param move : attackTransfer move
-     * @return : amount of defenders destroyed, used for correcting coming moves
+     * Executes the orders of this round on the game state and updates the map
      */
-    private int doAttack(AttackTransferMove move) {
-        Region fromRegion = map.getRegion(move.getFromRegion());
-        Region toRegion = map.getRegion(move.getToRegion());
-        int attackingArmies;
-        int defendingArmies = toRegion.getArmies();
-
-        int defendersDestroyed = 0;
-        int attackersDestroyed = 0;
-
-        if (fromRegion.getArmies() > 1) {
-            if (fromRegion.getArmies() - 1 >= move.getArmies()) // are there enough armies on fromRegion?
-                attackingArmies = move.getArmies();
-            else
-                attackingArmies = fromRegion.getArmies() - 1;
-
-            Battle battle = new Battle(attackingArmies, defendingArmies, this.gameplayRnd, this.settings);
-            attackersDestroyed = battle.getDestroyedAttackers();
-            defendersDestroyed = battle.getDestroyedDefenders();
-
-            if (attackersDestroyed >= attackingArmies) {
-                if (defendersDestroyed >= defendingArmies)
-                    defendersDestroyed = defendingArmies - 1;
-
-                attackersDestroyed = attackingArmies;
-            }
+    private void applyOrders() {
+        if (replayWriter != null) {
+            replayWriter.writeRoundOrders(roundNr, orders);
+        }
+        if (featureWriter != null) {
+            featureWriter.writeRoundOrders(orders);
+        }
+        state.applyInPlace(orders, moveOrderRnd, gameplayRnd, events);
+        state.writeTo(map);
+        if (replayWriter != null) {
+            replayWriter.writeRoundResults(orders, events, state.getHash());
+        }
+        if (featureWriter != null) {
+            featureWriter.writeRoundResults(orders);
+        }
 
-            // process result of attack
-            if (defendersDestroyed >= defendingArmies) // attack success
-            {
-                fromRegion.setArmies(fromRegion.getArmies() - attackingArmies);
-                toRegion.setPlayerName(move.getPlayerName());
-                toRegion.setArmies(attackingArmies - attackersDestroyed);
-                return 0;
-
-            } else // attack fail
-            {
-                fromRegion.setArmies(fromRegion.getArmies() - attackersDestroyed);
-                toRegion.setArmies(toRegion.getArmies() - defendersDestroyed);
-                return defendersDestroyed;
+        for (int e = 0; log != null && e < events.size(); e++) {
+            if (events.hasBattle(e)) {
+                log.format("Battle: %d attacked %d, %d atackers dies, %d defenders died\n",
+                        events.getAttackingArmies(e), events.getDefendingArmies(e),
+                        events.getAttackersDestroyed(e), events.getDefendersDestroyed(e));
             }
-        } else
-            move.markAsIllegal(move.getFromRegion() + " attack " + "only has 1 army");
-
-        return -1;
+        }
     }
 
     /**
      * @return : the winner of the game, null if the game is not over
      */
     public Player getWinner() {
-        if (map.ownedRegionsByPlayer(player1).isEmpty())
-            return player2;
-        else if (map.ownedRegionsByPlayer(player2).isEmpty())
+        switch (state.getWinner()) {
+        case 0:
             return player1;
-        else
+        case 1:
+            return player2;
+        default:
             return null;
+        }
     }
 
     /**
      * Calculates how many armies each player is able to place on the map for the next round
      */
     public void recalculateStartingArmies() {
-        player1.setArmiesLeft(settings.getBaseArmiesPerTurn());
-        player2.setArmiesLeft(settings.getBaseArmiesPerTurn());
-
-        for (SuperRegion superRegion : map.getSuperRegions()) {
-            Player player = getPlayer(map.getSuperRegionOwner(superRegion));
-            if (player != null)
-                player.setArmiesLeft(player.getArmiesLeft() + superRegion.getArmiesReward());
-        }
-    }
-
-    /**
-     * @param playerName : string of player's name
-     * @return : Player object who has given name
-     */
-    private Player getPlayer(String playerName) {
-        if (player1.getName().equals(playerName))
-            return player1;
-        else if (player2.getName().equals(playerName))
-            return player2;
-        else
-            return null;
+        player1.setArmiesLeft(state.getIncome(0));
+        player2.setArmiesLeft(state.getIncome(1));
     }
 
     /**
@@ -673,7 +642,7 @@ public class Processor
      * @param rnd        : the random number generator to be used
      * @return           : a random object from the collection
      */
-    private <T> T getRandomObjectFromCollection(Collection<T> collection, Random rnd) {
+    private <T> T getRandomObjectFromCollection(Collection<T> collection, SplitMix64 rnd) {
         // the algorithm assumes all IDs are sequential, from 1 to number_of_regions
         double rand = rnd.nextDouble();
         int index = (int) (rand * collection.size());
@@ -692,4 +661,123 @@ public class Processor
     public int getRoundNr() {
         return roundNr;
     }
+
+    //===================================================================================
+
+    /**
+     * Takes a snapshot of the game between two rounds (after the starting regions are distributed), see
+     * ProcessorSnapshot. Taking a snapshot does not change the game: the states of the random number
+     * generators are copied, not drawn from, so this game and all games restored from the snapshot
+     * continue with the same random numbers as a game of the same seeds without a snapshot.
+     */
+    public ProcessorSnapshot createSnapshot() {
+        if (state == null) {
+            throw new IllegalStateException("A snapshot can only be taken once the starting regions are distributed");
+        }
+        int numRegionIDs = state.getAdjacency().getMaxRegionID() + 1;
+        int[] owners = new int[numRegionIDs];
+        int[] armies = new int[numRegionIDs];
+        state.copyOwnersTo(owners, 0);
+        state.copyArmiesTo(armies, 0);
+
+        Player[] players = { player1, player2 };
+        long[] timeBanks = new long[players.length];
+        int[] armiesLeft = new int[players.length];
+        MoveBuffer[] visibleMoves = new MoveBuffer[players.length];
+        for (int p = 0; p < players.length; p++) {
+            timeBanks[p] = players[p].getTimeBank();
+            armiesLeft[p] = players[p].getArmiesLeft();
+            visibleMoves[p] = new MoveBuffer(visiblePrevTurnMoves.get(players[p]).size());
+            for (Move move : visiblePrevTurnMoves.get(players[p])) {
+                visibleMoves[p].add(move, state.getPlayerIndex(move.getPlayerName()));
+            }
+        }
+
+        return new ProcessorSnapshot(roundNr, state.getRoundNr(), state.getHash(), owners, armies,
+                wastelands.stream().mapToInt(Integer::intValue).sorted().toArray(), timeBanks, armiesLeft,
+                gameplayRnd.copy(), moveOrderRnd.copy(), (builtinBotRnd != null) ? builtinBotRnd.copy() : null,
+                visibleMoves);
+    }
+
+    /**
+     * Continues a game from a snapshot, instead of distributing starting regions (i.e. instead of
+     * getPicksAndInitGame()). The processor must have been created with the same map and settings as the
+     * game of the snapshot; the settings and the map (as it was at the start of the game) are sent to the
+     * players, so they can be new bots.
+     */
+    public void restoreSnapshot(ProcessorSnapshot snapshot) {
+        // the bots get the wastelands of the snapshot's game, not the ones set up for this processor
+        setupNeutrals(map);
+        wastelands = new HashSet<>();
+        for (int regionID : snapshot.getWastelands()) {
+            map.getRegion(regionID).setArmies(settings.getWastelandSize());
+            wastelands.add(regionID);
+        }
+        communication.sendSettings(player1, player2, this.maxRounds);
+        communication.sendSettings(player2, player1, this.maxRounds);
+        communication.sendBaseMapInfo(player1, map);
+        communication.sendBaseMapInfo(player2, map);
+
+        state = new GameState(map, settings, player1.getName(), player2.getName());
+        int[] owners = snapshot.getOwners();
+        int[] armies = snapshot.getArmies();
+        if (owners.length != state.getAdjacency().getMaxRegionID() + 1) {
+            throw new IllegalArgumentException("The snapshot is of a game on a different map");
+        }
+        for (int regionID = 0; regionID < owners.length; regionID++) {
+            state.setRegion(regionID, owners[regionID], armies[regionID]);
+        }
+        state.restoreRoundNr(snapshot.getStateRoundNr());
+        if (state.getHash() != snapshot.getStateHash()) {
+            throw new IllegalArgumentException("The snapshot is corrupt (its regions do not match its state hash)");
+        }
+        state.writeTo(map);
+        roundNr = snapshot.getRoundNr();
+
+        gameplayRnd = snapshot.getGameplayRnd();
+        moveOrderRnd = snapshot.getMoveOrderRnd();
+        if (builtinBotRnd != null && snapshot.getBuiltinBotRnd() != null) {
+            // otherwise the built-in bots keep the random numbers split off from this processor's seed
+            builtinBotRnd = snapshot.getBuiltinBotRnd();
+        }
+
+        Player[] players = { player1, player2 };
+        String[] playerNames = { player1.getName(), player2.getName() };
+        for (int p = 0; p < players.length; p++) {
+            players[p].setTimeBank(snapshot.getTimeBank(p));
+            players[p].setArmiesLeft(snapshot.getArmiesLeft(p));
+            MoveBuffer moves = snapshot.getVisibleMoves(p);
+            visiblePrevTurnMoves.get(players[p]).clear();
+            for (int i = 0; i < moves.size(); i++) {
+                visiblePrevTurnMoves.get(players[p]).add(moves.toMove(i, playerNames));
+            }
+        }
+
+        if (replayWriter != null) {
+            replayWriter.writeSnapshot(snapshot);
+            replayWriter.writeStart(roundNr, state);
+        }
+    }
+
+    /**
+     * @return : hash of the owners and armies of all regions after the last round (see GameState.getHash()),
+     *           e.g. to find identical positions in different games
+     */
+    public long getStateHash() {
+        return state.getHash();
+    }
+
+    // for ReplaySimulator: the state, and the orders and events of the last round (only valid until the next round)
+
+    GameState getState() {
+        return state;
+    }
+
+    MoveBuffer getRoundOrders() {
+        return orders;
+    }
+
+    TurnEvents getRoundEvents() {
+        return events;
+    }
 }
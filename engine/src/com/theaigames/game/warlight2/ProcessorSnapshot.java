@@ -0,0 +1,263 @@
+// Copyright 2015 theaigames.com (developers@theaigames.com)
+
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+
+//        http://www.apache.org/licenses/LICENSE-2.0
+
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+//    For the full copyright and license information, please view the LICENSE
+//    file that was distributed with this source code.
+
+
+package com.theaigames.game.warlight2;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import com.theaigames.game.warlight2.move.IllegalMoveReason;
+import com.theaigames.game.warlight2.move.MoveBuffer;
+
+/**
+ * ProcessorSnapshot class
+ *
+ * The state of a game between two rounds, as taken by Processor.createSnapshot(): the owners and
+ * armies of all regions, the wastelands, the time banks and armies of the players, the states of
+ * the random number generators, the round number and the moves each player saw in the last round.
+ * The map, the settings and the bots are not part of a snapshot.
+ *
+ * A snapshot does not change, so it can be restored into any number of new Processors (see
+ * Processor.restoreSnapshot()), e.g. to continue a game in many ways in parallel. Restored games
+ * continue with the random numbers the original game gets after the snapshot; use withSeed() to
+ * get different continuations.
+ */
+
+public class ProcessorSnapshot
+{
+    private static final int FORMAT_VERSION = 1;
+
+    private final int roundNr;            // the next round to play
+    private final int stateRoundNr;       // the round number of the GameState
+    private final long stateHash;
+    private final int[] owners;           // region ID -> player index, or GameState.NEUTRAL
+    private final int[] armies;           // region ID -> armies
+    private final int[] wastelands;       // IDs of the regions which started as wastelands
+    private final long[] timeBanks;       // player index -> time bank
+    private final int[] armiesLeft;       // player index -> armies left to place
+    private final SplitMix64 gameplayRnd;
+    private final SplitMix64 moveOrderRnd;
+    private final SplitMix64 builtinBotRnd;  // null if the game had no built-in bots
+    private final MoveBuffer[] visibleMoves;  // player index -> the moves of the last round visible to the player
+
+    ProcessorSnapshot(int roundNr, int stateRoundNr, long stateHash, int[] owners, int[] armies, int[] wastelands,
+            long[] timeBanks, int[] armiesLeft, SplitMix64 gameplayRnd, SplitMix64 moveOrderRnd,
+            SplitMix64 builtinBotRnd, MoveBuffer[] visibleMoves) {
+        this.roundNr = roundNr;
+        this.stateRoundNr = stateRoundNr;
+        this.stateHash = stateHash;
+        this.owners = owners;
+        this.armies = armies;
+        this.wastelands = wastelands;
+        this.timeBanks = timeBanks;
+        this.armiesLeft = armiesLeft;
+        this.gameplayRnd = gameplayRnd;
+        this.moveOrderRnd = moveOrderRnd;
+        this.builtinBotRnd = builtinBotRnd;
+        this.visibleMoves = visibleMoves;
+    }
+
+    /**
+     * @return : a snapshot of the same position, of which the random numbers (battles, move order and
+     *           choices of built-in bots) are derived from the given seed
+     */
+    public ProcessorSnapshot withSeed(long seed) {
+        SplitMix64 rnd = new SplitMix64(seed);
+        return new ProcessorSnapshot(this.roundNr, this.stateRoundNr, this.stateHash, this.owners, this.armies,
+                this.wastelands, this.timeBanks, this.armiesLeft, new SplitMix64(rnd.nextLong()),
+                new SplitMix64(rnd.nextLong()), new SplitMix64(rnd.nextLong()), this.visibleMoves);
+    }
+
+    /**
+     * @return : the number of the next round to be played
+     */
+    public int getRoundNr() {
+        return this.roundNr;
+    }
+
+    /**
+     * @return : the hash of the game state (see GameState.getHash())
+     */
+    public long getStateHash() {
+        return this.stateHash;
+    }
+
+    int getStateRoundNr() {
+        return this.stateRoundNr;
+    }
+
+    int[] getOwners() {
+        return this.owners;
+    }
+
+    int[] getArmies() {
+        return this.armies;
+    }
+
+    int[] getWastelands() {
+        return this.wastelands;
+    }
+
+    long getTimeBank(int player) {
+        return this.timeBanks[player];
+    }
+
+    int getArmiesLeft(int player) {
+        return this.armiesLeft[player];
+    }
+
+    // the random number generators are copied, so the snapshot can be restored again
+
+    SplitMix64 getGameplayRnd() {
+        return this.gameplayRnd.copy();
+    }
+
+    SplitMix64 getMoveOrderRnd() {
+        return this.moveOrderRnd.copy();
+    }
+
+    SplitMix64 getBuiltinBotRnd() {
+        return (this.builtinBotRnd != null) ? this.builtinBotRnd.copy() : null;
+    }
+
+    MoveBuffer getVisibleMoves(int player) {
+        return this.visibleMoves[player];
+    }
+
+    //===================================================================================
+
+    /**
+     * @return : the snapshot in a compact binary form, see fromBytes()
+     */
+    public byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + this.owners.length * 5);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT_VERSION);
+            out.writeInt(this.roundNr);
+            out.writeInt(this.stateRoundNr);
+            out.writeLong(this.stateHash);
+            out.writeInt(this.owners.length);
+            for (int regionID = 0; regionID < this.owners.length; regionID++) {
+                out.writeByte(this.owners[regionID]);
+                out.writeInt(this.armies[regionID]);
+            }
+            out.writeInt(this.wastelands.length);
+            for (int regionID : this.wastelands) {
+                out.writeInt(regionID);
+            }
+            out.writeByte(this.timeBanks.length);
+            for (int player = 0; player < this.timeBanks.length; player++) {
+                out.writeLong(this.timeBanks[player]);
+                out.writeInt(this.armiesLeft[player]);
+                MoveBuffer moves = this.visibleMoves[player];
+                out.writeInt(moves.size());
+                for (int i = 0; i < moves.size(); i++) {
+                    out.writeByte(moves.getPlayer(i));
+                    out.writeByte(moves.getType(i));
+                    out.writeInt(moves.getFromRegion(i));
+                    out.writeInt(moves.getToRegion(i));
+                    out.writeInt(moves.getArmies(i));
+                    out.writeByte(moves.isLegalMove(i) ? 0 : moves.getIllegalReason(i).getCode());
+                }
+            }
+            writeRnd(out, this.gameplayRnd);
+            writeRnd(out, this.moveOrderRnd);
+            out.writeBoolean(this.builtinBotRnd != null);
+            if (this.builtinBotRnd != null) {
+                writeRnd(out, this.builtinBotRnd);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);  // can not happen when writing to memory
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reads a snapshot written by toBytes()
+     */
+    public static ProcessorSnapshot fromBytes(byte[] data) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            int version = in.readByte();
+            if (version != FORMAT_VERSION) {
+                throw new IllegalArgumentException("Unsupported snapshot format version " + version);
+            }
+            int roundNr = in.readInt();
+            int stateRoundNr = in.readInt();
+            long stateHash = in.readLong();
+            int[] owners = new int[in.readInt()];
+            int[] armies = new int[owners.length];
+            for (int regionID = 0; regionID < owners.length; regionID++) {
+                owners[regionID] = in.readByte();
+                armies[regionID] = in.readInt();
+            }
+            int[] wastelands = new int[in.readInt()];
+            for (int i = 0; i < wastelands.length; i++) {
+                wastelands[i] = in.readInt();
+            }
+            int numPlayers = in.readByte();
+            long[] timeBanks = new long[numPlayers];
+            int[] armiesLeft = new int[numPlayers];
+            MoveBuffer[] visibleMoves = new MoveBuffer[numPlayers];
+            for (int player = 0; player < numPlayers; player++) {
+                timeBanks[player] = in.readLong();
+                armiesLeft[player] = in.readInt();
+                int numMoves = in.readInt();
+                visibleMoves[player] = new MoveBuffer(numMoves);
+                for (int i = 0; i < numMoves; i++) {
+                    int movePlayer = in.readByte();
+                    int type = in.readByte();
+                    int fromRegion = in.readInt();
+                    int toRegion = in.readInt();
+                    int moveArmies = in.readInt();
+                    int index = (type == MoveBuffer.TYPE_PLACE_ARMIES)
+                            ? visibleMoves[player].addPlaceArmies(movePlayer, fromRegion, moveArmies)
+                            : visibleMoves[player].addAttackTransfer(movePlayer, fromRegion, toRegion, moveArmies);
+                    int status = in.readByte();
+                    if (status != 0) {
+                        visibleMoves[player].markAsIllegal(index, IllegalMoveReason.fromCode(status));
+                    }
+                }
+            }
+            SplitMix64 gameplayRnd = readRnd(in);
+            SplitMix64 moveOrderRnd = readRnd(in);
+            SplitMix64 builtinBotRnd = in.readBoolean() ? readRnd(in) : null;
+            return new ProcessorSnapshot(roundNr, stateRoundNr, stateHash, owners, armies, wastelands,
+                    timeBanks, armiesLeft, gameplayRnd, moveOrderRnd, builtinBotRnd, visibleMoves);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid snapshot data", e);
+        }
+    }
+
+    private static void writeRnd(DataOutputStream out, SplitMix64 rnd) throws IOException {
+        out.writeLong(rnd.getSeed());
+        out.writeLong(rnd.getGamma());
+    }
+
+    private static SplitMix64 readRnd(DataInputStream in) throws IOException {
+        long seed = in.readLong();
+        long gamma = in.readLong();
+        if ((gamma & 1) == 0) {
+            throw new IOException("Invalid random number generator state");
+        }
+        return new SplitMix64(seed, gamma);
+    }
+}
@@ -0,0 +1,316 @@
+// Copyright 2015 theaigames.com (developers@theaigames.com)
+
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+
+//        http://www.apache.org/licenses/LICENSE-2.0
+
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+//    For the full copyright and license information, please view the LICENSE
+//    file that was distributed with this source code.
+
+
+package com.theaigames.game.warlight2;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+/**
+ * ReplayArchive class
+ *
+ * Reads an archive of replays (see ReplayWriter) written by ReplayArchiveWriters. An archive is a
+ * directory of segments, each of which is a data file with the replays one after the other, and an
+ * index file with an entry of fixed size for every replay:
+ *
+ *   header : "WL2I", format version, entry size, 0 (4 byte ints)
+ *   entry  : offset of the replay in the data file (8 bytes), length of the replay (4), winner (4, the
+ *            player index, -1 for a draw), last round number (4), 0 (4), map hash (8), settings hash (8),
+ *            map seed (8), game seed (8), hashes of the bots of player 1 and 2 (8 + 8, see getBotHash()),
+ *            game ID (32 bytes of UTF-8, padded with zeroes)
+ *
+ * Both files are memory-mapped, so the index can be searched (e.g. for the games on a map) without
+ * reading any replays, and any replay can be read without reading the ones before it. Games are
+ * numbered from 0 in the order of the segments and of their entries; the archive contains the games
+ * appended before it was opened.
+ */
+
+public class ReplayArchive
+{
+    static final int INDEX_MAGIC = 0x574C3249;  // "WL2I"
+    static final int INDEX_FORMAT_VERSION = 1;
+    static final int INDEX_HEADER_SIZE = 16;
+
+    static final int ENTRY_OFFSET = 0;
+    static final int ENTRY_LENGTH = 8;
+    static final int ENTRY_WINNER = 12;
+    static final int ENTRY_LAST_ROUND = 16;
+    static final int ENTRY_MAP_HASH = 24;
+    static final int ENTRY_SETTINGS_HASH = 32;
+    static final int ENTRY_MAP_SEED = 40;
+    static final int ENTRY_GAME_SEED = 48;
+    static final int ENTRY_BOT_HASHES = 56;
+    static final int ENTRY_GAME_ID = 72;
+    static final int MAX_GAME_ID_LENGTH = 32;
+    static final int ENTRY_SIZE = ENTRY_GAME_ID + MAX_GAME_ID_LENGTH;
+
+    /**
+     * ReplayVisitor interface
+     *
+     * Is given the replays of a scan of the archive, see parallelScan()
+     */
+    @FunctionalInterface
+    public interface ReplayVisitor
+    {
+        void visit(int game, ReplayReader replay) throws IOException;
+    }
+
+    private final ByteBuffer[] indexes;  // segment -> mapped index file
+    private final ByteBuffer[] data;     // segment -> mapped data file
+    private final int[] firstGames;      // segment -> number of its first game
+    private final int numGames;
+
+    /**
+     * Opens the archive in the directory (an empty archive if the directory has no segments)
+     *
+     * @throws IOException : if a segment can not be read, or is not a segment of an archive
+     */
+    public ReplayArchive(File directory) throws IOException {
+        List<ByteBuffer> indexes = new ArrayList<>();
+        List<ByteBuffer> data = new ArrayList<>();
+        for (int segment = 0; getIndexFile(directory, segment).isFile(); segment++) {
+            // the index is mapped before the data, so that all replays of the mapped entries are in the mapped data
+            ByteBuffer index = map(getIndexFile(directory, segment));
+            if (index.limit() > 0) {
+                if (index.limit() < INDEX_HEADER_SIZE || index.getInt(0) != INDEX_MAGIC) {
+                    throw new IOException("Not a replay archive index: " + getIndexFile(directory, segment));
+                }
+                if (index.getInt(4) != INDEX_FORMAT_VERSION || index.getInt(8) != ENTRY_SIZE) {
+                    throw new IOException("Unsupported replay archive format version " + index.getInt(4));
+                }
+            }
+            indexes.add(index);
+            data.add(map(getDataFile(directory, segment)));
+        }
+
+        this.indexes = indexes.toArray(new ByteBuffer[indexes.size()]);
+        this.data = data.toArray(new ByteBuffer[data.size()]);
+        this.firstGames = new int[this.indexes.length];
+        int numGames = 0;
+        for (int segment = 0; segment < this.indexes.length; segment++) {
+            this.firstGames[segment] = numGames;
+            // an entry which is being written (or was not completely written) is left out
+            numGames += Math.max(0, this.indexes[segment].limit() - INDEX_HEADER_SIZE) / ENTRY_SIZE;
+        }
+        this.numGames = numGames;
+    }
+
+    static File getIndexFile(File directory, int segment) {
+        return new File(directory, String.format("segment-%05d.index", segment));
+    }
+
+    static File getDataFile(File directory, int segment) {
+        return new File(directory, String.format("segment-%05d.replays", segment));
+    }
+
+    private static ByteBuffer map(File file) throws IOException {
+        if (!file.isFile()) {
+            return ByteBuffer.allocate(0);
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * @return : the hash of a bot (the command of a bot process or a built-in bot) in the index
+     */
+    public static long getBotHash(String bot) {
+        return ReplayWriter.hashString(bot);
+    }
+
+    //===================================================================================
+
+    public int getNumGames() {
+        return this.numGames;
+    }
+
+    /**
+     * @return : the games of the archive, in order (e.g. to be filtered by their index entries)
+     */
+    public IntStream games() {
+        return IntStream.range(0, this.numGames);
+    }
+
+    /**
+     * @param mapHash : see ReplayWriter.getMapHash()
+     */
+    public IntStream gamesOfMap(long mapHash) {
+        return games().filter(game -> getMapHash(game) == mapHash);
+    }
+
+    /**
+     * @return : the number of the game with the given ID, -1 if there is none
+     */
+    public int findGame(String gameID) {
+        ByteBuffer id = ByteBuffer.wrap(Arrays.copyOf(encodeGameID(gameID), MAX_GAME_ID_LENGTH));
+        for (int segment = 0; segment < this.indexes.length; segment++) {
+            ByteBuffer index = this.indexes[segment];
+            int numEntries = getNumEntries(segment);
+            for (int entry = 0; entry < numEntries; entry++) {
+                int position = INDEX_HEADER_SIZE + entry * ENTRY_SIZE + ENTRY_GAME_ID;
+                if (index.slice(position, MAX_GAME_ID_LENGTH).equals(id)) {
+                    return this.firstGames[segment] + entry;
+                }
+            }
+        }
+        return -1;
+    }
+
+    static byte[] encodeGameID(String gameID) {
+        byte[] id = gameID.getBytes(StandardCharsets.UTF_8);
+        if (id.length > MAX_GAME_ID_LENGTH) {
+            throw new IllegalArgumentException("Game ID longer than " + MAX_GAME_ID_LENGTH + " bytes: " + gameID);
+        }
+        return id;
+    }
+
+    public String getGameID(int game) {
+        ByteBuffer id = getIndex(game).slice(getEntryPosition(game) + ENTRY_GAME_ID, MAX_GAME_ID_LENGTH);
+        int length = 0;
+        while (length < MAX_GAME_ID_LENGTH && id.get(length) != 0) {
+            length++;
+        }
+        byte[] bytes = new byte[length];
+        id.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return : the player index of the winner, -1 for a draw
+     */
+    public int getWinner(int game) {
+        return getIndex(game).getInt(getEntryPosition(game) + ENTRY_WINNER);
+    }
+
+    public int getLastRoundNr(int game) {
+        return getIndex(game).getInt(getEntryPosition(game) + ENTRY_LAST_ROUND);
+    }
+
+    /**
+     * @return : see ReplayWriter.getMapHash()
+     */
+    public long getMapHash(int game) {
+        return getIndex(game).getLong(getEntryPosition(game) + ENTRY_MAP_HASH);
+    }
+
+    /**
+     * @return : see ReplayWriter.getSettingsHash()
+     */
+    public long getSettingsHash(int game) {
+        return getIndex(game).getLong(getEntryPosition(game) + ENTRY_SETTINGS_HASH);
+    }
+
+    public long getMapSeed(int game) {
+        return getIndex(game).getLong(getEntryPosition(game) + ENTRY_MAP_SEED);
+    }
+
+    public long getGameSeed(int game) {
+        return getIndex(game).getLong(getEntryPosition(game) + ENTRY_GAME_SEED);
+    }
+
+    /**
+     * @return : see getBotHash(String)
+     */
+    public long getBotHash(int game, int player) {
+        return getIndex(game).getLong(getEntryPosition(game) + ENTRY_BOT_HASHES + player * 8);
+    }
+
+    /**
+     * @return : a reader of the replay of the game, reading directly from the mapped data file
+     */
+    public ReplayReader openReplay(int game) throws IOException {
+        ByteBuffer index = getIndex(game);
+        int position = getEntryPosition(game);
+        long offset = index.getLong(position + ENTRY_OFFSET);
+        int length = index.getInt(position + ENTRY_LENGTH);
+        return new ReplayReader(this.data[getSegment(game)].slice((int) offset, length));
+    }
+
+    /**
+     * Gives the replays of all games accepted by the filter to the visitor, in parallel (so the visitor
+     * must be thread-safe). The filter is given the game number, e.g. to check its index entry.
+     *
+     * @throws UncheckedIOException : if a replay can not be read, or the visitor throws an IOException
+     */
+    public void parallelScan(IntPredicate filter, ReplayVisitor visitor) {
+        games().parallel().filter(filter).forEach(game -> {
+            try {
+                visitor.visit(game, openReplay(game));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error reading game " + game + " of the archive", e);
+            }
+        });
+    }
+
+    //===================================================================================
+
+    private int getNumEntries(int segment) {
+        int nextFirstGame = (segment + 1 < this.firstGames.length) ? this.firstGames[segment + 1] : this.numGames;
+        return nextFirstGame - this.firstGames[segment];
+    }
+
+    private int getSegment(int game) {
+        if (game < 0 || game >= this.numGames) {
+            throw new IndexOutOfBoundsException("Game " + game + " is out of range, number of games " + this.numGames);
+        }
+        // the last segment starting at or before the game (segments without games start at the same game)
+        int segment = Arrays.binarySearch(this.firstGames, game);
+        if (segment < 0) {
+            return -segment - 2;
+        }
+        while (segment + 1 < this.firstGames.length && this.firstGames[segment + 1] == game) {
+            segment++;
+        }
+        return segment;
+    }
+
+    private ByteBuffer getIndex(int game) {
+        return this.indexes[getSegment(game)];
+    }
+
+    private int getEntryPosition(int game) {
+        return INDEX_HEADER_SIZE + (game - this.firstGames[getSegment(game)]) * ENTRY_SIZE;
+    }
+
+    /**
+     * Prints the index of an archive
+     *
+     * @param args : the directory of the archive
+     */
+    public static void main(String[] args) throws IOException {
+        ReplayArchive archive = new ReplayArchive(new File(args[0]));
+        for (int game = 0; game < archive.getNumGames(); game++) {
+            int winner = archive.getWinner(game);
+            System.out.format("%s: map %016x, seeds %d %d, winner %s, last round %d\n",
+                    archive.getGameID(game), archive.getMapHash(game), archive.getMapSeed(game), archive.getGameSeed(game),
+                    (winner >= 0) ? "player " + (winner + 1) : "draw", archive.getLastRoundNr(game));
+        }
+        System.out.format("%d games\n", archive.getNumGames());
+    }
+}
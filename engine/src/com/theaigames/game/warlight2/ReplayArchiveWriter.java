@@ -0,0 +1,168 @@
+// Copyright 2015 theaigames.com (developers@theaigames.com)
+
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+
+//        http://www.apache.org/licenses/LICENSE-2.0
+
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+//    For the full copyright and license information, please view the LICENSE
+//    file that was distributed with this source code.
+
+
+package com.theaigames.game.warlight2;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * ReplayArchiveWriter class
+ *
+ * Appends replays to an archive (see ReplayArchive for the format). Appending is thread-safe, and any
+ * number of processes (e.g. the games of a tournament) can append to the same archive at the same time:
+ * the index file of the last segment is locked while a replay is appended. A replay is written before
+ * its index entry, so readers only see complete replays.
+ */
+
+public class ReplayArchiveWriter
+{
+    public static final long DEFAULT_MAX_SEGMENT_SIZE = 1L << 30;
+
+    // a file lock is held by the whole process, so appends from all threads are serialized first
+    private static final Object APPEND_LOCK = new Object();
+
+    private final File directory;
+    private final long maxSegmentSize;
+
+    public ReplayArchiveWriter(File directory) {
+        this(directory, DEFAULT_MAX_SEGMENT_SIZE);
+    }
+
+    /**
+     * @param maxSegmentSize : a new segment is started when a data file would get larger than this
+     *                         (at most 2 GB, the largest file that can be memory-mapped at once)
+     */
+    public ReplayArchiveWriter(File directory, long maxSegmentSize) {
+        if (maxSegmentSize <= 0 || maxSegmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The maximum segment size must be between 1 byte and 2 GB");
+        }
+        this.directory = directory;
+        this.maxSegmentSize = maxSegmentSize;
+    }
+
+    /**
+     * Appends the replay of a finished game to the archive
+     *
+     * @param gameID : at most 32 bytes of UTF-8
+     * @param replay : a complete replay, as written by a ReplayWriter
+     * @throws IllegalArgumentException : if the game ID is too long, or the replay is not complete
+     */
+    public void append(String gameID, byte[] replay) throws IOException {
+        ByteBuffer entry = createEntry(gameID, replay);
+
+        synchronized (APPEND_LOCK) {
+            this.directory.mkdirs();
+            int segment = 0;
+            while (ReplayArchive.getIndexFile(this.directory, segment + 1).isFile()) {
+                segment++;
+            }
+            while (!append(segment, entry, replay)) {
+                segment++;
+            }
+        }
+    }
+
+    /**
+     * @return : false if the replay does not fit in the segment
+     */
+    private boolean append(int segment, ByteBuffer entry, byte[] replay) throws IOException {
+        try (FileChannel index = FileChannel.open(ReplayArchive.getIndexFile(this.directory, segment).toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            FileLock lock = index.lock();
+            try {
+                return append(index, segment, entry, replay);
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    // called while holding the lock of the index of the segment
+    private boolean append(FileChannel index, int segment, ByteBuffer entry, byte[] replay) throws IOException {
+        try (FileChannel data = FileChannel.open(ReplayArchive.getDataFile(this.directory, segment).toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            long offset = data.size();
+            if (offset > 0 && offset + replay.length > this.maxSegmentSize) {
+                return false;
+            }
+
+            long indexSize = index.size();
+            if (indexSize < ReplayArchive.INDEX_HEADER_SIZE) {
+                ByteBuffer header = ByteBuffer.allocate(ReplayArchive.INDEX_HEADER_SIZE);
+                header.putInt(ReplayArchive.INDEX_MAGIC).putInt(ReplayArchive.INDEX_FORMAT_VERSION)
+                        .putInt(ReplayArchive.ENTRY_SIZE).putInt(0).flip();
+                writeFully(index, header, 0);
+                indexSize = ReplayArchive.INDEX_HEADER_SIZE;
+            }
+
+            writeFully(data, ByteBuffer.wrap(replay), offset);
+
+            // an incomplete entry (of an append that failed) is overwritten
+            long entryPosition = ReplayArchive.INDEX_HEADER_SIZE
+                    + (indexSize - ReplayArchive.INDEX_HEADER_SIZE) / ReplayArchive.ENTRY_SIZE * ReplayArchive.ENTRY_SIZE;
+            entry.putLong(ReplayArchive.ENTRY_OFFSET, offset);
+            writeFully(index, entry.duplicate(), entryPosition);
+            return true;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * @return : the index entry of the replay, without its offset
+     */
+    private static ByteBuffer createEntry(String gameID, byte[] replay) throws IOException {
+        ByteBuffer entry = ByteBuffer.allocate(ReplayArchive.ENTRY_SIZE);
+        byte[] id = ReplayArchive.encodeGameID(gameID);
+
+        ReplayReader reader = new ReplayReader(ByteBuffer.wrap(replay));
+        String[] bots = reader.getBots();
+        if (bots.length != 2) {
+            throw new IllegalArgumentException("The archive only supports games of two players");
+        }
+        int record;
+        do {
+            record = reader.next();
+        } while (record != ReplayReader.RECORD_END && record != ReplayReader.RECORD_NONE);
+        if (record != ReplayReader.RECORD_END) {
+            throw new IllegalArgumentException("The replay of game " + gameID + " is not complete");
+        }
+
+        entry.putInt(ReplayArchive.ENTRY_LENGTH, replay.length);
+        entry.putInt(ReplayArchive.ENTRY_WINNER, reader.getWinner());
+        entry.putInt(ReplayArchive.ENTRY_LAST_ROUND, reader.getRoundNr());
+        entry.putLong(ReplayArchive.ENTRY_MAP_HASH, reader.getMapHash());
+        entry.putLong(ReplayArchive.ENTRY_SETTINGS_HASH, reader.getSettingsHash());
+        entry.putLong(ReplayArchive.ENTRY_MAP_SEED, reader.getMapSeed());
+        entry.putLong(ReplayArchive.ENTRY_GAME_SEED, reader.getGameSeed());
+        for (int p = 0; p < bots.length; p++) {
+            entry.putLong(ReplayArchive.ENTRY_BOT_HASHES + p * 8, ReplayArchive.getBotHash(bots[p]));
+        }
+        entry.put(ReplayArchive.ENTRY_GAME_ID, id);
+        return entry;
+    }
+}
@@ -0,0 +1,108 @@
+// Copyright 2015 theaigames.com (developers@theaigames.com)
+
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+
+//        http://www.apache.org/licenses/LICENSE-2.0
+
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+//    For the full copyright and license information, please view the LICENSE
+//    file that was distributed with this source code.
+
+package com.theaigames.game.warlight2;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+import com.theaigames.game.warlight2.bots.BuiltinBot;
+import com.theaigames.game.warlight2.map.Map;
+import com.theaigames.game.warlight2.map.Settings;
+
+/**
+ * ReplayBenchmark class
+ *
+ * Times the rounds of games played from scenarios (see ScenarioRunner) between two built-in bots,
+ * without a replay and with a ReplayWriter recording the game into memory, so the difference is the
+ * cost of recording a round (and not that of writing it to disk). The header of the replay is timed
+ * on its own and left out of the time per round with a replay, as it is written once per game. The
+ * same game is played in all cases, and they are measured in turn so that all see the same state of
+ * the JVM.
+ *
+ * Usage: ReplayBenchmark bot1 bot2 seed scenario...
+ */
+
+public class ReplayBenchmark
+{
+    private static final int GAMES = 200;          // games per measurement
+    private static final int MEASUREMENTS = 10;    // the fastest measurement is reported
+
+    public static void main(String args[]) throws IOException {
+        BuiltinBot bot1 = BuiltinBot.forName(args[0]);
+        BuiltinBot bot2 = BuiltinBot.forName(args[1]);
+        long seed = Long.parseLong(args[2]);
+        String[] bots = { Warlight2.BUILTIN_BOT_PREFIX + args[0], Warlight2.BUILTIN_BOT_PREFIX + args[1] };
+
+        System.out.println("scenario             rounds  us/round  us/header  us/round with replay  overhead  replay bytes/round");
+        for (int i = 3; i < args.length; i++) {
+            Scenario scenario = Scenario.fromFile(new File(args[i]), new Settings());
+            run(args[i], scenario, bot1, bot2, seed, bots);
+        }
+    }
+
+    private static void run(String name, Scenario scenario, BuiltinBot bot1, BuiltinBot bot2, long seed,
+            String[] bots) {
+        PrintStream noLog = new PrintStream(OutputStream.nullOutputStream());
+        String[] playerNames = { "player1", "player2" };
+        Map map = scenario.createMap();  // only read for the header, not parsed again for every game
+
+        ScenarioRunner.Result result = ScenarioRunner.run(scenario, bot1, bot2, seed, noLog);
+        int numRounds = result.getLastRoundNr() - scenario.getRoundNr() + 1;
+
+        long bestTime = Long.MAX_VALUE;
+        long bestTimeHeader = Long.MAX_VALUE;
+        long bestTimeReplay = Long.MAX_VALUE;
+        int replaySize = 0;
+        for (int measurement = 0; measurement < MEASUREMENTS; measurement++) {
+            long timeStart = System.nanoTime();
+            for (int game = 0; game < GAMES; game++) {
+                ScenarioRunner.run(scenario, bot1, bot2, seed, noLog);
+            }
+            bestTime = Math.min(bestTime, System.nanoTime() - timeStart);
+
+            timeStart = System.nanoTime();
+            for (int game = 0; game < GAMES; game++) {
+                new ReplayWriter(new ByteArrayOutputStream(), 0, seed, scenario.getSettings(), map, playerNames,
+                        bots).close();
+            }
+            bestTimeHeader = Math.min(bestTimeHeader, System.nanoTime() - timeStart);
+
+            timeStart = System.nanoTime();
+            for (int game = 0; game < GAMES; game++) {
+                ByteArrayOutputStream replayOut = new ByteArrayOutputStream();
+                try (ReplayWriter replayWriter = new ReplayWriter(replayOut, 0, seed, scenario.getSettings(), map,
+                        playerNames, bots)) {
+                    ScenarioRunner.run(scenario, bot1, bot2, seed, noLog, replayWriter);
+                }
+                replaySize = replayOut.size();
+            }
+            bestTimeReplay = Math.min(bestTimeReplay, System.nanoTime() - timeStart);
+        }
+
+        // the header (which hashes the map and the settings) is written once per game, the rest for every round
+        double timePerRound = bestTime / 1e3 / GAMES / numRounds;
+        double timePerHeader = bestTimeHeader / 1e3 / GAMES;
+        double timePerRoundReplay = (bestTimeReplay - bestTimeHeader) / 1e3 / GAMES / numRounds;
+        System.out.format("%-20s %7d %9.1f %10.1f %21.1f %8.1f%% %19.0f\n", name, numRounds, timePerRound,
+                timePerHeader, timePerRoundReplay, 100 * (timePerRoundReplay / timePerRound - 1),
+                (double) replaySize / numRounds);
+    }
+}
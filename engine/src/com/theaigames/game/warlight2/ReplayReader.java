@@ -0,0 +1,481 @@
+// Copyright 2015 theaigames.com (developers@theaigames.com)
+
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+
+//        http://www.apache.org/licenses/LICENSE-2.0
+
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+//    For the full copyright and license information, please view the LICENSE
+//    file that was distributed with this source code.
+
+
+package com.theaigames.game.warlight2;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.theaigames.game.warlight2.move.IllegalMoveReason;
+import com.theaigames.game.warlight2.move.Move;
+import com.theaigames.game.warlight2.move.MoveBuffer;
+
+/**
+ * ReplayReader class
+ *
+ * Reads a replay written by a ReplayWriter (see there for the format), from a stream or from memory
+ * (e.g. from a ReplayArchive), one record at a time: next()
+ * reads the next record and returns its type, and the getters of that type then return its
+ * contents. The header is read when the reader is created.
+ *
+ * The orders, results and events of a ROUND record are re-used for the next ROUND record, so they
+ * must be copied if they are needed after the next call to next().
+ */
+
+public class ReplayReader implements Closeable
+{
+    public static final int RECORD_NONE = 0;  // returned by next() at the end of the replay
+    public static final int RECORD_PICKS = 1;
+    public static final int RECORD_SNAPSHOT = 2;
+    public static final int RECORD_START = 3;
+    public static final int RECORD_ROUND = 4;
+    public static final int RECORD_END = 5;
+
+    private final InputStream in;  // null when reading from memory
+    private final ByteBuffer buffer;
+
+    private final long mapSeed;
+    private final long gameSeed;
+    private final long settingsHash;
+    private final long mapHash;
+    private final String[] playerNames;
+    private final String[] bots;
+
+    // the contents of the current record
+    private int recordType;
+    private int player;
+    private int[] picks;
+    private ProcessorSnapshot snapshot;
+    private int roundNr;
+    private int[] owners;
+    private int[] armies;
+    private final MoveBuffer orders;
+    private final MoveBuffer results;
+    private final TurnEvents events;
+    private int winner;
+    private long stateHash;
+
+    /**
+     * Reads the header of the replay
+     *
+     * @throws IOException : if the input is not a replay, or of an unsupported format version
+     */
+    public ReplayReader(InputStream in) throws IOException {
+        this(in, ByteBuffer.allocate(64 * 1024).limit(0));
+    }
+
+    /**
+     * Reads the header of the replay in the buffer (from its position to its limit, the buffer is not changed)
+     *
+     * @throws IOException : if the buffer does not hold a replay, or one of an unsupported format version
+     */
+    public ReplayReader(ByteBuffer replay) throws IOException {
+        this(null, replay.slice());
+    }
+
+    private ReplayReader(InputStream in, ByteBuffer buffer) throws IOException {
+        this.in = in;
+        this.buffer = buffer;
+
+        if (readFixedInt() != ReplayWriter.MAGIC) {
+            throw new IOException("Not a replay");
+        }
+        int version = readVarInt();
+        if (version != ReplayWriter.FORMAT_VERSION) {
+            throw new IOException("Unsupported replay format version " + version);
+        }
+        this.mapSeed = readSignedVarLong();
+        this.gameSeed = readSignedVarLong();
+        this.settingsHash = readFixedLong();
+        this.mapHash = readFixedLong();
+        int numPlayers = readVarInt();
+        this.playerNames = new String[numPlayers];
+        this.bots = new String[numPlayers];
+        for (int p = 0; p < numPlayers; p++) {
+            this.playerNames[p] = readString();
+            this.bots[p] = readString();
+        }
+
+        this.recordType = RECORD_NONE;
+        this.orders = new MoveBuffer(64);
+        this.results = new MoveBuffer(64);
+        this.events = new TurnEvents();
+    }
+
+    public long getMapSeed() {
+        return this.mapSeed;
+    }
+
+    public long getGameSeed() {
+        return this.gameSeed;
+    }
+
+    /**
+     * @return : see ReplayWriter.getSettingsHash()
+     */
+    public long getSettingsHash() {
+        return this.settingsHash;
+    }
+
+    /**
+     * @return : see ReplayWriter.getMapHash()
+     */
+    public long getMapHash() {
+        return this.mapHash;
+    }
+
+    public String[] getPlayerNames() {
+        return this.playerNames.clone();
+    }
+
+    /**
+     * @return : player index -> the command of the bot process, or the name of the built-in bot
+     */
+    public String[] getBots() {
+        return this.bots.clone();
+    }
+
+    //===================================================================================
+
+    /**
+     * Reads the next record
+     *
+     * @return : the type of the record, RECORD_NONE at the end of the replay
+     * @throws EOFException : if the replay ends within a record (e.g. the game was not finished)
+     */
+    public int next() throws IOException {
+        if (!this.buffer.hasRemaining() && !fill()) {
+            this.recordType = RECORD_NONE;
+            return this.recordType;
+        }
+        this.recordType = readVarInt();
+        switch (this.recordType) {
+        case RECORD_PICKS:
+            this.player = readVarInt();
+            this.picks = new int[readVarInt()];
+            for (int i = 0; i < this.picks.length; i++) {
+                this.picks[i] = readSignedVarInt();
+            }
+            break;
+        case RECORD_SNAPSHOT:
+            byte[] bytes = new byte[readVarInt()];
+            readBytes(bytes);
+            this.snapshot = ProcessorSnapshot.fromBytes(bytes);
+            break;
+        case RECORD_START:
+            this.roundNr = readVarInt();
+            int numRegionIDs = readVarInt();
+            this.owners = new int[numRegionIDs];
+            this.armies = new int[numRegionIDs];
+            for (int regionID = 0; regionID < numRegionIDs; regionID++) {
+                this.owners[regionID] = readVarInt() - 1;
+                this.armies[regionID] = readVarInt();
+            }
+            break;
+        case RECORD_ROUND:
+            readRound();
+            break;
+        case RECORD_END:
+            this.winner = readVarInt() - 1;
+            this.roundNr = readVarInt();
+            this.stateHash = readFixedLong();
+            break;
+        default:
+            throw new IOException("Unknown replay record type " + this.recordType);
+        }
+        return this.recordType;
+    }
+
+    private void readRound() throws IOException {
+        this.roundNr = readVarInt();
+        int numOrders = readVarInt();
+        this.orders.clear();
+        this.results.clear();
+        for (int i = 0; i < numOrders; i++) {
+            int player = readSignedVarInt();
+            int type = readVarInt();
+            int fromRegion = readSignedVarInt();
+            if (type == MoveBuffer.TYPE_ATTACK_TRANSFER) {
+                int toRegion = readSignedVarInt();
+                int armies = readSignedVarInt();
+                this.orders.addAttackTransfer(player, fromRegion, toRegion, armies);
+                this.results.addAttackTransfer(player, fromRegion, toRegion, armies);
+            } else {
+                int armies = readSignedVarInt();
+                this.orders.addPlaceArmies(player, fromRegion, armies);
+                this.results.addPlaceArmies(player, fromRegion, armies);
+            }
+        }
+        for (int i = 0; i < numOrders; i++) {
+            this.results.setArmies(i, readSignedVarInt());
+            int code = readVarInt();
+            if (code < 0 || code > IllegalMoveReason.values().length) {
+                throw new IOException("Unknown illegal move reason " + code + " in replay");
+            }
+            if (code != 0) {
+                this.results.markAsIllegal(i, IllegalMoveReason.fromCode(code));
+            }
+        }
+
+        int numEvents = readVarInt();
+        this.events.clear();
+        for (int e = 0; e < numEvents; e++) {
+            int moveIndex = readVarInt();
+            int visibleTo = readVarInt();
+            int battle = readVarInt();
+            if (battle != 0) {
+                this.events.add(moveIndex, visibleTo, readVarInt(), readVarInt(), readVarInt(), readVarInt(),
+                        battle == 3);
+            } else {
+                this.events.add(moveIndex, visibleTo);
+            }
+        }
+        this.stateHash = readFixedLong();
+    }
+
+    public int getRecordType() {
+        return this.recordType;
+    }
+
+    /**
+     * @return : the player of a PICKS record
+     */
+    public int getPlayer() {
+        return this.player;
+    }
+
+    /**
+     * @return : the regions picked by the player of a PICKS record, in order of preference
+     */
+    public int[] getPicks() {
+        return this.picks;
+    }
+
+    /**
+     * @return : the snapshot of a SNAPSHOT record
+     */
+    public ProcessorSnapshot getSnapshot() {
+        return this.snapshot;
+    }
+
+    /**
+     * @return : the first round played from the state of a START record, the round of a ROUND record,
+     *           or the last round of an END record
+     */
+    public int getRoundNr() {
+        return this.roundNr;
+    }
+
+    /**
+     * @return : region ID -> player index or GameState.NEUTRAL, of a START record
+     */
+    public int[] getOwners() {
+        return this.owners;
+    }
+
+    /**
+     * @return : region ID -> armies, of a START record
+     */
+    public int[] getArmies() {
+        return this.armies;
+    }
+
+    /**
+     * @return : the orders of a ROUND record, as they were given (in the order they were received)
+     */
+    public MoveBuffer getOrders() {
+        return this.orders;
+    }
+
+    /**
+     * @return : the orders of a ROUND record as they were executed: with the armies actually moved,
+     *           and marked as illegal if they were
+     */
+    public MoveBuffer getResults() {
+        return this.results;
+    }
+
+    /**
+     * @return : the executed moves and battles of a ROUND record, in order of execution
+     */
+    public TurnEvents getEvents() {
+        return this.events;
+    }
+
+    /**
+     * @return : the player index of the winner of an END record, -1 for a draw
+     */
+    public int getWinner() {
+        return this.winner;
+    }
+
+    /**
+     * @return : the state hash after a ROUND record or at an END record (see GameState.getHash())
+     */
+    public long getStateHash() {
+        return this.stateHash;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.in != null) {
+            this.in.close();
+        }
+    }
+
+    //===================================================================================
+
+    private boolean fill() throws IOException {
+        if (this.in == null) {
+            return false;
+        }
+        int n = this.in.read(this.buffer.array());
+        this.buffer.position(0).limit(Math.max(0, n));
+        return n > 0;
+    }
+
+    private int readByte() throws IOException {
+        if (!this.buffer.hasRemaining() && !fill()) {
+            throw new EOFException("The replay ends within a record");
+        }
+        return this.buffer.get() & 0xFF;
+    }
+
+    private int readVarInt() throws IOException {
+        return (int) readVarLong();
+    }
+
+    private int readSignedVarInt() throws IOException {
+        int value = readVarInt();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private long readSignedVarLong() throws IOException {
+        long value = readVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in replay");
+    }
+
+    private int readFixedInt() throws IOException {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            value = (value << 8) | readByte();
+        }
+        return value;
+    }
+
+    private long readFixedLong() throws IOException {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | readByte();
+        }
+        return value;
+    }
+
+    private String readString() throws IOException {
+        byte[] bytes = new byte[readVarInt()];
+        readBytes(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void readBytes(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (!this.buffer.hasRemaining() && !fill()) {
+                throw new EOFException("The replay ends within a record");
+            }
+            int n = Math.min(bytes.length - offset, this.buffer.remaining());
+            this.buffer.get(bytes, offset, n);
+            offset += n;
+        }
+    }
+
+    //===================================================================================
+
+    /**
+     * Prints the course of a game from its replay
+     *
+     * @param args : the replay file
+     */
+    public static void main(String[] args) throws IOException {
+        try (ReplayReader reader = new ReplayReader(new FileInputStream(args[0]))) {
+            String[] playerNames = reader.getPlayerNames();
+            System.out.format("map seed %d, game seed %d, settings hash %016x, map hash %016x%n",
+                    reader.getMapSeed(), reader.getGameSeed(), reader.getSettingsHash(), reader.getMapHash());
+            for (int p = 0; p < playerNames.length; p++) {
+                System.out.format("player [%s]: %s%n", playerNames[p], reader.getBots()[p]);
+            }
+
+            while (reader.next() != RECORD_NONE) {
+                switch (reader.getRecordType()) {
+                case RECORD_PICKS:
+                    System.out.format("Player [%s] picked %s%n", playerNames[reader.getPlayer()],
+                            Arrays.toString(reader.getPicks()));
+                    break;
+                case RECORD_SNAPSHOT:
+                    System.out.format("Snapshot at round %d%n", reader.getSnapshot().getRoundNr());
+                    break;
+                case RECORD_START:
+                    System.out.format("Starting at round %d%n", reader.getRoundNr());
+                    break;
+                case RECORD_ROUND:
+                    System.out.format("------ Round #%d ------%n", reader.getRoundNr());
+                    MoveBuffer results = reader.getResults();
+                    TurnEvents events = reader.getEvents();
+                    for (int e = 0; e < events.size(); e++) {
+                        Move move = results.toMove(events.getMoveIndex(e), playerNames);
+                        System.out.print(move.getString());
+                        if (!move.isLegalMove()) {
+                            System.out.print(" (illegal: " + move.getIllegalDescription() + ")");
+                        }
+                        if (events.hasBattle(e)) {
+                            System.out.format(" - battle %d vs %d, %d attackers and %d defenders destroyed%s",
+                                    events.getAttackingArmies(e), events.getDefendingArmies(e),
+                                    events.getAttackersDestroyed(e), events.getDefendersDestroyed(e),
+                                    events.isConquered(e) ? ", conquered" : "");
+                        }
+                        System.out.println();
+                    }
+                    System.out.format("state hash %016x%n", reader.getStateHash());
+                    break;
+                case RECORD_END:
+                    System.out.format("winner: %s after round %d%n",
+                            (reader.getWinner() >= 0) ? playerNames[reader.getWinner()] : "draw", reader.getRoundNr());
+                    break;
+                }
+            }
+        }
+    }
+}
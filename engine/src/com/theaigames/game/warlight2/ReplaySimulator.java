@@ -0,0 +1,299 @@
+// Copyright 2015 theaigames.com (developers@theaigames.com)
+
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+
+//        http://www.apache.org/licenses/LICENSE-2.0
+
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+//    For the full copyright and license information, please view the LICENSE
+//    file that was distributed with this source code.
+
+
+package com.theaigames.game.warlight2;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import com.theaigames.engine.io.IOPlayer;
+import com.theaigames.game.warlight2.bots.BuiltinBot;
+import com.theaigames.game.warlight2.map.Map;
+import com.theaigames.game.warlight2.map.MapJSON;
+import com.theaigames.game.warlight2.map.Settings;
+
+import org.json.JSONObject;
+
+/**
+ * ReplaySimulator class
+ *
+ * Re-plays games from their replays (see ReplayWriter) through a Processor, without the bots: the
+ * picks and orders of the players are taken from the replay, and the Processor plays the game with
+ * the seeds of the replay. Every result recorded in the replay (starting regions, executed orders,
+ * battles, state hashes and the winner) is compared with the re-played game, e.g. to check that a
+ * change of the engine does not change the outcome of recorded games.
+ *
+ * The maps and settings of the replays are looked up by their hashes, from the files given.
+ */
+
+public class ReplaySimulator
+{
+    /**
+     * Result class
+     *
+     * The outcome of re-playing a game
+     */
+    public static class Result
+    {
+        private final int roundNr;
+        private final String difference;
+
+        Result(int roundNr, String difference) {
+            this.roundNr = roundNr;
+            this.difference = difference;
+        }
+
+        public boolean isIdentical() {
+            return this.difference == null;
+        }
+
+        /**
+         * @return : the first round of which the outcome is different (0 if the game could not be set up, or
+         *           its starting regions are different), or the last round of the game if it is identical
+         */
+        public int getRoundNr() {
+            return this.roundNr;
+        }
+
+        /**
+         * @return : a description of the difference, null if the game is identical
+         */
+        public String getDifference() {
+            return this.difference;
+        }
+    }
+
+    private final HashMap<Long, Supplier<Map>> maps;
+    private final HashMap<Long, Settings> settings;
+
+    /**
+     * Creates a simulator without maps, and with the default settings only
+     */
+    public ReplaySimulator() {
+        this.maps = new HashMap<>();
+        this.settings = new HashMap<>();
+        addSettings(new Settings());
+    }
+
+    /**
+     * @param createMap : creates a new copy of the map
+     */
+    public void addMap(Supplier<Map> createMap) {
+        this.maps.put(ReplayWriter.getMapHash(createMap.get()), createMap);
+    }
+
+    public void addSettings(Settings settings) {
+        this.settings.put(ReplayWriter.getSettingsHash(settings), settings);
+    }
+
+    /**
+     * Adds the map and/or settings of a map, settings or scenario file
+     */
+    public void addFile(File file) throws IOException {
+        JSONObject json = new JSONObject(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+        if (Scenario.isScenario(json)) {
+            Scenario scenario = Scenario.fromJSON(json, file.getAbsoluteFile().getParentFile(), new Settings());
+            addMap(scenario::createMap);
+            addSettings(scenario.getSettings());
+        } else if (json.has("territories")) {
+            addMap(() -> MapJSON.createMap(json));
+        } else {
+            addSettings(new Settings(json));
+        }
+    }
+
+    //===================================================================================
+
+    /**
+     * Re-plays the game of the replay up to the first difference
+     */
+    public Result simulate(ReplayReader replay) throws IOException {
+        Settings settings = this.settings.get(replay.getSettingsHash());
+        if (settings == null) {
+            return new Result(0, String.format("no settings with hash %016x", replay.getSettingsHash()));
+        }
+        Supplier<Map> createMap = this.maps.get(replay.getMapHash());
+        if (createMap == null) {
+            return new Result(0, String.format("no map with hash %016x", replay.getMapHash()));
+        }
+
+        String[] playerNames = replay.getPlayerNames();
+        String[] bots = replay.getBots();
+        Player[] players = new Player[playerNames.length];
+        List<List<Integer>> picks = new ArrayList<>();
+        for (int p = 0; p < players.length; p++) {
+            // the picks and orders of the players are given to the Processor, the players are never asked;
+            // built-in bots are still created, as the Processor splits off random numbers for them
+            BuiltinBot builtinBot = Warlight2.getBuiltinBot(bots[p]);
+            players[p] = (builtinBot != null)
+                    ? new Player(playerNames[p], builtinBot, settings)
+                    : new Player(playerNames[p], (IOPlayer) null, settings);
+            picks.add(new ArrayList<>());
+        }
+
+        // as in Warlight2: the game seed is used for the gameplay, the map seed for the map generation
+        Processor processor = new Processor(createMap.get(), settings, new SplitMix64(replay.getGameSeed()),
+                new SplitMix64(replay.getMapSeed()), players[0], players[1]);
+        processor.setLog(null);
+
+        boolean started = false;
+        int roundNr = 0;
+        while (replay.next() != ReplayReader.RECORD_NONE) {
+            switch (replay.getRecordType()) {
+            case ReplayReader.RECORD_PICKS:
+                picks.set(replay.getPlayer(), IntStream.of(replay.getPicks()).boxed().collect(Collectors.toList()));
+                break;
+            case ReplayReader.RECORD_SNAPSHOT:
+                if (started) {
+                    return new Result(roundNr, "a snapshot in the middle of the game");
+                }
+                processor.restoreSnapshot(replay.getSnapshot());
+                started = true;
+                break;
+            case ReplayReader.RECORD_START:
+                if (!started) {
+                    processor.initGame(picks.get(0), picks.get(1));
+                    started = true;
+                }
+                if (!hasRegions(processor.getState(), replay.getOwners(), replay.getArmies())) {
+                    return new Result(0, "different starting regions");
+                }
+                break;
+            case ReplayReader.RECORD_ROUND:
+                roundNr = replay.getRoundNr();
+                processor.playRound(roundNr, replay.getOrders());
+                if (!processor.getRoundOrders().contentEquals(replay.getResults())) {
+                    return new Result(roundNr, "different armies or legality of the executed orders");
+                }
+                if (!processor.getRoundEvents().contentEquals(replay.getEvents())) {
+                    return new Result(roundNr, "different order of execution, visibility or battles");
+                }
+                if (processor.getStateHash() != replay.getStateHash()) {
+                    return new Result(roundNr, "different owners or armies after the round");
+                }
+                break;
+            case ReplayReader.RECORD_END:
+                // without a winner by the rules, the game ended in a draw or by a crash of a bot process
+                Player winner = processor.getWinner();
+                if (winner != null && (replay.getWinner() < 0 || winner != players[replay.getWinner()])) {
+                    return new Result(roundNr, "different winner");
+                }
+                if (processor.getStateHash() != replay.getStateHash()) {
+                    return new Result(roundNr, "different owners or armies at the end of the game");
+                }
+                return new Result(roundNr, null);
+            }
+        }
+        return new Result(roundNr, "the replay ends before the end of the game");
+    }
+
+    private static boolean hasRegions(GameState state, int[] owners, int[] armies) {
+        if (owners.length != state.getAdjacency().getMaxRegionID() + 1) {
+            return false;
+        }
+        for (int regionID = 0; regionID < owners.length; regionID++) {
+            if (state.getOwner(regionID) != owners[regionID] || state.getArmies(regionID) != armies[regionID]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * ReplaySource interface
+     *
+     * Opens a replay to be re-played: a replay file, or a game in an archive
+     */
+    private interface ReplaySource
+    {
+        ReplayReader open() throws IOException;
+    }
+
+    private Result simulate(ReplaySource source) {
+        try (ReplayReader replay = source.open()) {
+            return simulate(replay);
+        } catch (IOException e) {
+            return new Result(0, "could not read the replay: " + e);
+        } catch (RuntimeException e) {
+            // e.g. a corrupt replay, or a bug in the engine
+            return new Result(0, "error re-playing the game: " + e);
+        }
+    }
+
+    //===================================================================================
+
+    /**
+     * Re-plays all replays at the same time, and prints their results in order; exits with status 1 if
+     * any game is different
+     *
+     * @param args : the map, settings and scenario files (*.json) used by the games, and the replay files
+     *               and replay archive directories (see ReplayArchive)
+     */
+    public static void main(String args[]) throws IOException {
+        ReplaySimulator simulator = new ReplaySimulator();
+        List<String> names = new ArrayList<>();
+        List<ReplaySource> sources = new ArrayList<>();
+        for (String arg : args) {
+            File file = new File(arg);
+            if (arg.endsWith(".json")) {
+                simulator.addFile(file);
+            } else if (file.isDirectory()) {
+                ReplayArchive archive = new ReplayArchive(file);
+                for (int game = 0; game < archive.getNumGames(); game++) {
+                    int archiveGame = game;
+                    names.add(arg + "/" + archive.getGameID(game));
+                    sources.add(() -> archive.openReplay(archiveGame));
+                }
+            } else {
+                names.add(arg);
+                sources.add(() -> new ReplayReader(new FileInputStream(file)));
+            }
+        }
+
+        long timeStart = System.currentTimeMillis();
+        List<Result> results = IntStream.range(0, sources.size()).parallel()
+                .mapToObj(i -> simulator.simulate(sources.get(i)))
+                .collect(Collectors.toList());
+        long timeElapsed = System.currentTimeMillis() - timeStart;
+
+        int numDifferent = 0;
+        for (int i = 0; i < sources.size(); i++) {
+            Result result = results.get(i);
+            if (result.isIdentical()) {
+                System.out.format("%s: identical, %d rounds\n", names.get(i), result.getRoundNr());
+            } else {
+                System.out.format("%s: different at round %d: %s\n", names.get(i), result.getRoundNr(),
+                        result.getDifference());
+                numDifferent++;
+            }
+        }
+        System.out.format("%d games re-played in %d ms, %d different\n", sources.size(), timeElapsed, numDifferent);
+        if (numDifferent > 0) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,313 @@
+// Copyright 2015 theaigames.com (developers@theaigames.com)
+
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+
+//        http://www.apache.org/licenses/LICENSE-2.0
+
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+//    For the full copyright and license information, please view the LICENSE
+//    file that was distributed with this source code.
+
+
+package com.theaigames.game.warlight2;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import com.theaigames.game.warlight2.map.Map;
+import com.theaigames.game.warlight2.map.MapJSON;
+import com.theaigames.game.warlight2.map.Settings;
+import com.theaigames.game.warlight2.move.IllegalMoveReason;
+import com.theaigames.game.warlight2.move.MoveBuffer;
+
+/**
+ * ReplayWriter class
+ *
+ * Writes a replay of a game: a compact binary file to which the Processor appends a record for
+ * every step of the game, so that the game can be analysed or re-played (see ReplayReader) without
+ * its bots. Numbers are written as varints (7 bits per byte, small numbers take a single byte;
+ * signed numbers are zigzag encoded), hashes as 8 bytes. The file is:
+ *
+ *   header   : "WL2R", format version, map seed, game seed, settings hash, map hash, number of
+ *              players, and for every player its name and bot (command or built-in bot)
+ *   PICKS    : player, number of picks, the regions the player picked (one record per player)
+ *   SNAPSHOT : length, ProcessorSnapshot.toBytes() (when a game continues from a snapshot)
+ *   START    : round number, number of region IDs, owner + 1 and armies of every region ID
+ *   ROUND    : round number, the orders as they were given: number of orders, player, type,
+ *              region(s) and armies of every order; the result of every order: armies executed,
+ *              IllegalMoveReason code (0 if legal); the events in order of execution: number of
+ *              events, move index, visibility, battle flag (+ 2 if the region was conquered), and
+ *              the armies of the battle if there was one; the state hash after the round
+ *   END      : winner + 1 (0 for a draw), last round number, state hash
+ *
+ * Records are only appended, and are buffered in memory: a round takes some tens of bytes and no
+ * allocations. Writing errors do not stop the game: they are reported once, and the replay stays
+ * incomplete.
+ */
+
+public class ReplayWriter implements Closeable
+{
+    static final int MAGIC = 0x574C3252;  // "WL2R"
+    static final int FORMAT_VERSION = 1;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_VARINT_SIZE = 10;
+
+    private final OutputStream out;
+    private final byte[] buffer;
+    private int position;
+    private boolean failed;
+
+    /**
+     * Writes the header of the replay
+     *
+     * @param mapSeed     : seed of the wasteland generation/available regions
+     * @param gameSeed    : seed of the turn order/battles
+     * @param map         : the map of the game (only its regions and bonuses are used)
+     * @param playerNames : player index -> player name
+     * @param bots        : player index -> the command of the bot process, or the name of the built-in bot
+     */
+    public ReplayWriter(OutputStream out, long mapSeed, long gameSeed, Settings settings, Map map,
+            String[] playerNames, String[] bots) {
+        this.out = out;
+        this.buffer = new byte[BUFFER_SIZE];
+
+        writeFixedInt(MAGIC);
+        writeVarInt(FORMAT_VERSION);
+        writeSignedVarLong(mapSeed);
+        writeSignedVarLong(gameSeed);
+        writeFixedLong(getSettingsHash(settings));
+        writeFixedLong(getMapHash(map));
+        writeVarInt(playerNames.length);
+        for (int p = 0; p < playerNames.length; p++) {
+            writeString(playerNames[p]);
+            writeString(bots[p]);
+        }
+    }
+
+    /**
+     * @return : a hash of all the settings, to check that a replay is re-played with the same settings
+     */
+    public static long getSettingsHash(Settings settings) {
+        return hashString(settings.getSettingsJSON().toString());
+    }
+
+    /**
+     * @return : a hash of the regions, their neighbors and the bonuses of the map (not of the owners and armies)
+     */
+    public static long getMapHash(Map map) {
+        return hashString(MapJSON.getMapJSON(map).toString());
+    }
+
+    // 64 bit FNV-1a
+    static long hashString(String s) {
+        long hash = 0xCBF29CE484222325L;
+        for (byte b : s.getBytes(StandardCharsets.UTF_8)) {
+            hash = (hash ^ (b & 0xFF)) * 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    //===================================================================================
+
+    public void writePicks(int player, List<Integer> picks) {
+        writeVarInt(ReplayReader.RECORD_PICKS);
+        writeVarInt(player);
+        writeVarInt(picks.size());
+        for (int regionID : picks) {
+            writeSignedVarInt(regionID);
+        }
+    }
+
+    public void writeSnapshot(ProcessorSnapshot snapshot) {
+        byte[] bytes = snapshot.toBytes();
+        writeVarInt(ReplayReader.RECORD_SNAPSHOT);
+        writeVarInt(bytes.length);
+        writeBytes(bytes, 0, bytes.length);
+    }
+
+    /**
+     * @param roundNr : the number of the first round played from this state
+     */
+    public void writeStart(int roundNr, GameState state) {
+        int numRegionIDs = state.getAdjacency().getMaxRegionID() + 1;
+        writeVarInt(ReplayReader.RECORD_START);
+        writeVarInt(roundNr);
+        writeVarInt(numRegionIDs);
+        for (int regionID = 0; regionID < numRegionIDs; regionID++) {
+            writeVarInt(state.getOwner(regionID) + 1);
+            writeVarInt(state.getArmies(regionID));
+        }
+    }
+
+    /**
+     * Writes the first part of a ROUND record, must be called before the orders are executed
+     * (executing them changes their armies)
+     */
+    public void writeRoundOrders(int roundNr, MoveBuffer orders) {
+        writeVarInt(ReplayReader.RECORD_ROUND);
+        writeVarInt(roundNr);
+        writeVarInt(orders.size());
+        for (int i = 0; i < orders.size(); i++) {
+            int type = orders.getType(i);
+            writeSignedVarInt(orders.getPlayer(i));
+            writeVarInt(type);
+            writeSignedVarInt(orders.getFromRegion(i));
+            if (type == MoveBuffer.TYPE_ATTACK_TRANSFER) {
+                writeSignedVarInt(orders.getToRegion(i));
+            }
+            writeSignedVarInt(orders.getArmies(i));
+        }
+    }
+
+    /**
+     * Writes the rest of the ROUND record started by writeRoundOrders(), with the results of the executed orders
+     */
+    public void writeRoundResults(MoveBuffer orders, TurnEvents events, long stateHash) {
+        for (int i = 0; i < orders.size(); i++) {
+            IllegalMoveReason reason = orders.getIllegalReason(i);
+            writeSignedVarInt(orders.getArmies(i));
+            writeVarInt((reason == null) ? 0 : reason.getCode());
+        }
+        writeVarInt(events.size());
+        for (int e = 0; e < events.size(); e++) {
+            writeVarInt(events.getMoveIndex(e));
+            writeVarInt(events.getVisibleTo(e));
+            if (events.hasBattle(e)) {
+                writeVarInt(events.isConquered(e) ? 3 : 1);
+                writeVarInt(events.getAttackingArmies(e));
+                writeVarInt(events.getDefendingArmies(e));
+                writeVarInt(events.getAttackersDestroyed(e));
+                writeVarInt(events.getDefendersDestroyed(e));
+            } else {
+                writeVarInt(0);
+            }
+        }
+        writeFixedLong(stateHash);
+    }
+
+    /**
+     * @param winner : player index of the winner, -1 for a draw
+     */
+    public void writeEnd(int winner, int lastRoundNr, long stateHash) {
+        writeVarInt(ReplayReader.RECORD_END);
+        writeVarInt(winner + 1);
+        writeVarInt(lastRoundNr);
+        writeFixedLong(stateHash);
+    }
+
+    public void flush() {
+        if (this.position > 0 && !this.failed) {
+            try {
+                this.out.write(this.buffer, 0, this.position);
+                this.out.flush();
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+        this.position = 0;
+    }
+
+    @Override
+    public void close() {
+        flush();
+        try {
+            this.out.close();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * @return : false if the replay could not be written completely
+     */
+    public boolean isComplete() {
+        return !this.failed;
+    }
+
+    private void fail(IOException e) {
+        if (!this.failed) {
+            System.err.println("Error writing the replay, the rest of the game is not recorded: " + e);
+            this.failed = true;
+        }
+    }
+
+    //===================================================================================
+
+    private void ensureSpace(int size) {
+        if (this.position + size > this.buffer.length) {
+            if (this.failed) {
+                this.position = 0;
+            } else {
+                try {
+                    this.out.write(this.buffer, 0, this.position);
+                } catch (IOException e) {
+                    fail(e);
+                }
+                this.position = 0;
+            }
+        }
+    }
+
+    private void writeVarInt(int value) {
+        writeVarLong(value & 0xFFFFFFFFL);
+    }
+
+    private void writeSignedVarInt(int value) {
+        writeVarInt((value << 1) ^ (value >> 31));
+    }
+
+    private void writeSignedVarLong(long value) {
+        writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    private void writeVarLong(long value) {
+        ensureSpace(MAX_VARINT_SIZE);
+        while ((value & ~0x7FL) != 0) {
+            this.buffer[this.position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        this.buffer[this.position++] = (byte) value;
+    }
+
+    private void writeFixedInt(int value) {
+        ensureSpace(4);
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            this.buffer[this.position++] = (byte) (value >>> shift);
+        }
+    }
+
+    private void writeFixedLong(long value) {
+        ensureSpace(8);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            this.buffer[this.position++] = (byte) (value >>> shift);
+        }
+    }
+
+    private void writeString(String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(bytes.length);
+        writeBytes(bytes, 0, bytes.length);
+    }
+
+    private void writeBytes(byte[] bytes, int offset, int length) {
+        while (length > 0) {
+            ensureSpace(1);
+            int n = Math.min(length, this.buffer.length - this.position);
+            System.arraycopy(bytes, offset, this.buffer, this.position, n);
+            this.position += n;
+            offset += n;
+            length -= n;
+        }
+    }
+}
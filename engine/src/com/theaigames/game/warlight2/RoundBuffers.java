@@ -0,0 +1,85 @@
+// Copyright 2015 theaigames.com (developers@theaigames.com)
+
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+
+//        http://www.apache.org/licenses/LICENSE-2.0
+
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+//    For the full copyright and license information, please view the LICENSE
+//    file that was distributed with this source code.
+
+package com.theaigames.game.warlight2;
+
+import java.util.Arrays;
+
+import com.theaigames.game.warlight2.map.Adjacency;
+
+/**
+ * RoundBuffers class
+ *
+ * Holds the data needed only for the duration of a single round while executing moves. The
+ * buffers are sized to the map once and reset at the start of every round, instead of
+ * allocating new collections (or a copy of the map) each round.
+ */
+
+public class RoundBuffers
+{
+    private final int[] armiesAtRoundStart;  // region ID -> armies present when the orders were issued,
+                                             //              minus the armies already used this round
+    private final Adjacency adjacency;
+    private final int[] edgeUsedInRound;     // edge index -> last round an attack/transfer was done over it
+    private int round;
+
+    public RoundBuffers(Adjacency adjacency) {
+        this.adjacency = adjacency;
+        this.armiesAtRoundStart = new int[this.adjacency.getMaxRegionID() + 1];
+        this.edgeUsedInRound = new int[this.adjacency.getNumEdges()];
+        this.round = 0;
+    }
+
+    /**
+     * Starts a new round: records the current armies of all regions and marks all edges as unused
+     *
+     * @param armies : region ID -> current armies
+     */
+    public void reset(int[] armies) {
+        System.arraycopy(armies, 0, this.armiesAtRoundStart, 0, this.armiesAtRoundStart.length);
+        if (this.round == Integer.MAX_VALUE) {
+            // before the round number wraps around to numbers still left in the edges from earlier rounds
+            Arrays.fill(this.edgeUsedInRound, 0);
+            this.round = 0;
+        }
+        this.round++;  // edges marked in previous rounds are no longer equal to the round number
+    }
+
+    public int getArmiesAtRoundStart(int regionID) {
+        return this.armiesAtRoundStart[regionID];
+    }
+
+    public void setArmiesAtRoundStart(int regionID, int armies) {
+        this.armiesAtRoundStart[regionID] = armies;
+    }
+
+    /**
+     * @return : true if armies have already been moved from the first to the second region this round.
+     *           Always false if the regions are not neighbours
+     */
+    public boolean isEdgeUsed(int fromRegionID, int toRegionID) {
+        int edge = this.adjacency.getEdgeIndex(fromRegionID, toRegionID);
+        return edge >= 0 && this.edgeUsedInRound[edge] == this.round;
+    }
+
+    public void markEdgeUsed(int fromRegionID, int toRegionID) {
+        int edge = this.adjacency.getEdgeIndex(fromRegionID, toRegionID);
+        if (edge >= 0) {
+            this.edgeUsedInRound[edge] = this.round;
+        }
+    }
+}
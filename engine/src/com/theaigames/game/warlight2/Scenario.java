@@ -0,0 +1,150 @@
+// Copyright 2015 theaigames.com (developers@theaigames.com)
+
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+
+//        http://www.apache.org/licenses/LICENSE-2.0
+
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+//    For the full copyright and license information, please view the LICENSE
+//    file that was distributed with this source code.
+
+
+package com.theaigames.game.warlight2;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import com.theaigames.game.warlight2.map.Map;
+import com.theaigames.game.warlight2.map.MapJSON;
+import com.theaigames.game.warlight2.map.Region;
+import com.theaigames.game.warlight2.map.Settings;
+import com.theaigames.game.warlight2.move.MoveBuffer;
+
+/**
+ * Scenario class
+ *
+ * A position to start a game from, instead of picking starting regions: e.g. to test how bots
+ * play an endgame, without playing the rounds before it. A scenario file is a JSON object:
+ *
+ *   {
+ *     "map"        : { ... },  // the map JSON (see MapJSON), or the name of a map file
+ *                              // (relative to the directory of the scenario file)
+ *     "settings"   : { ... },  // optional, the given default settings if not given
+ *     "standing"   : [ ... ],  // the owners and armies of the regions, see MapJSON.getStandingsJSON()
+ *                              // (with players "player1" and "player2"; regions not in it are neutral,
+ *                              // with the number of neutral armies from the settings)
+ *     "round"      : 30,       // optional, the round to start at (1 if not given)
+ *     "wastelands" : [ 3, 7 ]  // optional, the regions to report as wastelands to the bots
+ *   }
+ */
+
+public class Scenario
+{
+    private final JSONObject mapJSON;
+    private final Settings settings;
+    private final JSONArray standing;
+    private final int roundNr;
+    private final int[] wastelands;
+
+    public Scenario(JSONObject mapJSON, Settings settings, JSONArray standing, int roundNr, int[] wastelands) {
+        if (roundNr < 1) {
+            throw new IllegalArgumentException("A scenario can not start before round 1");
+        }
+        this.mapJSON = mapJSON;
+        this.settings = settings;
+        this.standing = standing;
+        this.roundNr = roundNr;
+        this.wastelands = wastelands.clone();
+    }
+
+    /**
+     * @return : true if the JSON is a scenario (rather than e.g. a map)
+     */
+    public static boolean isScenario(JSONObject json) {
+        return json.has("standing");
+    }
+
+    /**
+     * @param directory       : the directory map file names in the scenario are relative to
+     * @param defaultSettings : the settings to use if the scenario has none
+     */
+    public static Scenario fromJSON(JSONObject json, File directory, Settings defaultSettings) throws IOException {
+        Object map = json.get("map");
+        JSONObject mapJSON = (map instanceof JSONObject)
+                ? (JSONObject) map
+                : new JSONObject(readFile(new File(directory, map.toString())));
+        Settings settings = json.has("settings") ? new Settings(json.getJSONObject("settings")) : defaultSettings;
+        JSONArray wastelandsJSON = json.optJSONArray("wastelands");
+        int[] wastelands = new int[(wastelandsJSON != null) ? wastelandsJSON.length() : 0];
+        for (int i = 0; i < wastelands.length; i++) {
+            wastelands[i] = wastelandsJSON.getInt(i);
+        }
+        return new Scenario(mapJSON, settings, json.getJSONArray("standing"), json.optInt("round", 1), wastelands);
+    }
+
+    public static Scenario fromFile(File file, Settings defaultSettings) throws IOException {
+        return fromJSON(new JSONObject(readFile(file)), file.getAbsoluteFile().getParentFile(), defaultSettings);
+    }
+
+    /**
+     * @return : a new copy of the map of the scenario, without owners and armies
+     */
+    public Map createMap() {
+        return MapJSON.createMap(this.mapJSON);
+    }
+
+    public Settings getSettings() {
+        return this.settings;
+    }
+
+    /**
+     * @return : the round the scenario starts at
+     */
+    public int getRoundNr() {
+        return this.roundNr;
+    }
+
+    /**
+     * Converts the scenario to a snapshot, so a Processor can continue from it (see Processor.restoreSnapshot())
+     *
+     * @param rnd : the random numbers of the game are seeded from this
+     */
+    public ProcessorSnapshot createSnapshot(String playerName1, String playerName2, SplitMix64 rnd) {
+        Map map = createMap();
+        for (Region region : map.getRegions()) {
+            region.setPlayerName(Region.OWNER_NEUTRAL);
+            region.setArmies(this.settings.getNeutralArmies());
+        }
+        MapJSON.applyStandings(map, this.standing);
+        GameState state = new GameState(map, this.settings, playerName1, playerName2);
+        state.restoreRoundNr(this.roundNr - 1);
+
+        int numRegionIDs = state.getAdjacency().getMaxRegionID() + 1;
+        int[] owners = new int[numRegionIDs];
+        int[] armies = new int[numRegionIDs];
+        state.copyOwnersTo(owners, 0);
+        state.copyArmiesTo(armies, 0);
+
+        long timeBank = this.settings.getInitialTimebank();
+        return new ProcessorSnapshot(this.roundNr, state.getRoundNr(), state.getHash(), owners, armies,
+                this.wastelands, new long[] { timeBank, timeBank }, new int[2],
+                new SplitMix64(rnd.nextLong()), new SplitMix64(rnd.nextLong()), new SplitMix64(rnd.nextLong()),
+                new MoveBuffer[] { new MoveBuffer(0), new MoveBuffer(0) });
+    }
+
+    private static String readFile(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+}
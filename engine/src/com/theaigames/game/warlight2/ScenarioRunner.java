@@ -0,0 +1,155 @@
+// Copyright 2015 theaigames.com (developers@theaigames.com)
+
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+
+//        http://www.apache.org/licenses/LICENSE-2.0
+
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+//    For the full copyright and license information, please view the LICENSE
+//    file that was distributed with this source code.
+
+
+package com.theaigames.game.warlight2;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import com.theaigames.game.warlight2.bots.BuiltinBot;
+import com.theaigames.game.warlight2.map.Map;
+import com.theaigames.game.warlight2.map.Settings;
+
+/**
+ * ScenarioRunner class
+ *
+ * Plays games from scenarios (see Scenario) between two built-in bots. Without bot processes a game
+ * takes milliseconds, and many scenarios are played at the same time, so this can be used e.g. as a
+ * quick regression test of how bots play endgames.
+ */
+
+public class ScenarioRunner
+{
+    /**
+     * Result class
+     *
+     * The outcome of a game played from a scenario
+     */
+    public static class Result
+    {
+        private final Player winner;
+        private final int lastRoundNr;
+        private final long stateHash;
+
+        Result(Player winner, int lastRoundNr, long stateHash) {
+            this.winner = winner;
+            this.lastRoundNr = lastRoundNr;
+            this.stateHash = stateHash;
+        }
+
+        /**
+         * @return : the winner of the game, null if the game is a draw
+         */
+        public Player getWinner() {
+            return this.winner;
+        }
+
+        /**
+         * @return : the number of the last round played
+         */
+        public int getLastRoundNr() {
+            return this.lastRoundNr;
+        }
+
+        /**
+         * @return : hash of the final game state (see GameState.getHash())
+         */
+        public long getStateHash() {
+            return this.stateHash;
+        }
+    }
+
+    /**
+     * Plays a game from the scenario until there is a winner or the maximum number of rounds is reached
+     *
+     * @param log : where the course of the game is printed (see Processor.setLog())
+     */
+    public static Result run(Scenario scenario, BuiltinBot bot1, BuiltinBot bot2, long seed, PrintStream log) {
+        return run(scenario, bot1, bot2, seed, log, null);
+    }
+
+    /**
+     * Plays a game from the scenario like run(), and records it in a replay
+     *
+     * @param replayWriter : the replay the game is recorded in (the header must already be written, and the
+     *                       replay is not closed), or null if no replay is written
+     */
+    public static Result run(Scenario scenario, BuiltinBot bot1, BuiltinBot bot2, long seed, PrintStream log,
+            ReplayWriter replayWriter) {
+        Settings settings = scenario.getSettings();
+        Player player1 = new Player("player1", bot1, settings);
+        Player player2 = new Player("player2", bot2, settings);
+
+        SplitMix64 rnd = new SplitMix64(seed);
+        Map map = scenario.createMap();
+        int maxRounds = settings.getMaxRounds(map.getRegions().size());
+        Processor processor = new Processor(map, settings, rnd, rnd.split(), player1, player2);
+        processor.setLog(log);
+        processor.setReplayWriter(replayWriter);
+        processor.restoreSnapshot(scenario.createSnapshot(player1.getName(), player2.getName(), rnd));
+
+        int roundNr = processor.getRoundNr();
+        while (processor.getWinner() == null && roundNr <= maxRounds) {
+            processor.playRound(roundNr);
+            roundNr = processor.getRoundNr();
+        }
+        if (replayWriter != null) {
+            Player winner = processor.getWinner();
+            replayWriter.writeEnd((winner == player1) ? 0 : (winner == player2) ? 1 : -1, roundNr - 1,
+                    processor.getStateHash());
+        }
+        return new Result(processor.getWinner(), roundNr - 1, processor.getStateHash());
+    }
+
+    /**
+     * Plays the games of all scenarios at the same time, and prints their results in order
+     *
+     * @param args : the built-in bots of player 1 and 2 (e.g. "greedy", see BuiltinBot.forName()), the seed,
+     *               followed by the scenario files
+     */
+    public static void main(String args[]) throws IOException {
+        BuiltinBot bot1 = BuiltinBot.forName(args[0]);
+        BuiltinBot bot2 = BuiltinBot.forName(args[1]);
+        long seed = Long.parseLong(args[2]);
+
+        Scenario[] scenarios = new Scenario[args.length - 3];
+        for (int i = 0; i < scenarios.length; i++) {
+            scenarios[i] = Scenario.fromFile(new File(args[i + 3]), new Settings());
+        }
+
+        PrintStream noLog = new PrintStream(OutputStream.nullOutputStream());
+        long timeStart = System.currentTimeMillis();
+        List<Result> results = IntStream.range(0, scenarios.length).parallel()
+                .mapToObj(i -> run(scenarios[i], bot1, bot2, seed, noLog))
+                .collect(Collectors.toList());
+        long timeElapsed = System.currentTimeMillis() - timeStart;
+
+        for (int i = 0; i < scenarios.length; i++) {
+            Result result = results.get(i);
+            System.out.format("%s: winner %s, last round %d, state hash %016x\n", args[i + 3],
+                    (result.getWinner() != null) ? result.getWinner().getName() : "draw",
+                    result.getLastRoundNr(), result.getStateHash());
+        }
+        System.out.format("%d scenarios played in %d ms\n", scenarios.length, timeElapsed);
+    }
+}
@@ -0,0 +1,133 @@
+// Copyright 2015 theaigames.com (developers@theaigames.com)
+
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+
+//        http://www.apache.org/licenses/LICENSE-2.0
+
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+//    For the full copyright and license information, please view the LICENSE
+//    file that was distributed with this source code.
+
+package com.theaigames.game.warlight2;
+
+/**
+ * SplitMix64 class
+ *
+ * The random number generator of the game: the algorithm of java.util.SplittableRandom (and the
+ * same numbers for the same seed), but its state, a seed and a gamma, can be read and restored.
+ * This way a snapshot of a game (see ProcessorSnapshot) can store where the random numbers are,
+ * without drawing from them, and a game restored from it continues with exactly the numbers the
+ * original game gets. Like SplittableRandom it is not thread safe; use split() to get a generator
+ * for another thread.
+ */
+
+public final class SplitMix64
+{
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private long seed;
+    private final long gamma;  // always odd
+
+    public SplitMix64(long seed) {
+        this(seed, GOLDEN_GAMMA);
+    }
+
+    /**
+     * Restores a generator from its state (see getSeed() and getGamma())
+     */
+    public SplitMix64(long seed, long gamma) {
+        if ((gamma & 1) == 0) {
+            throw new IllegalArgumentException("The gamma of a SplitMix64 must be odd");
+        }
+        this.seed = seed;
+        this.gamma = gamma;
+    }
+
+    /**
+     * @return : a generator in the same state as this one, which gives the same numbers
+     */
+    public SplitMix64 copy() {
+        return new SplitMix64(this.seed, this.gamma);
+    }
+
+    public long getSeed() {
+        return this.seed;
+    }
+
+    public long getGamma() {
+        return this.gamma;
+    }
+
+    /**
+     * @return : a new generator, of which the numbers are independent of the ones of this generator
+     *           (as SplittableRandom.split())
+     */
+    public SplitMix64 split() {
+        return new SplitMix64(nextLong(), mixGamma(nextSeed()));
+    }
+
+    public long nextLong() {
+        return mix64(nextSeed());
+    }
+
+    public int nextInt() {
+        return mix32(nextSeed());
+    }
+
+    /**
+     * @return : a number from 0 (inclusive) to bound (exclusive)
+     */
+    public int nextInt(int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("bound must be positive");
+        }
+        int m = bound - 1;
+        int r = nextInt();
+        if ((bound & m) == 0) {
+            r &= m;
+        } else {
+            // reject the numbers at the top which would make small results more likely
+            for (int u = r >>> 1; u + m - (r = u % bound) < 0; u = nextInt() >>> 1)
+                ;
+        }
+        return r;
+    }
+
+    /**
+     * @return : a number from 0.0 (inclusive) to 1.0 (exclusive)
+     */
+    public double nextDouble() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    private long nextSeed() {
+        return this.seed += this.gamma;
+    }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static int mix32(long z) {
+        z = (z ^ (z >>> 33)) * 0x62A9D9ED799705F5L;
+        return (int) (((z ^ (z >>> 28)) * 0xCB24D0A5C88C35B3L) >>> 32);
+    }
+
+    // an odd gamma with enough bit transitions, so that the numbers of split generators do not correlate
+    private static long mixGamma(long z) {
+        z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+        z = (z ^ (z >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        z = (z ^ (z >>> 33)) | 1L;
+        int n = Long.bitCount(z ^ (z >>> 1));
+        return (n < 24) ? z ^ 0xAAAAAAAAAAAAAAAAL : z;
+    }
+}
@@ -0,0 +1,134 @@
+// Copyright 2015 theaigames.com (developers@theaigames.com)
+
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+
+//        http://www.apache.org/licenses/LICENSE-2.0
+
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+//    For the full copyright and license information, please view the LICENSE
+//    file that was distributed with this source code.
+
+package com.theaigames.game.warlight2;
+
+import java.util.Arrays;
+
+/**
+ * TurnEvents class
+ *
+ * Records what happened while a round of moves was executed by a GameState: the executed moves
+ * in order of execution (legal deployments first, then all attacks/transfers, including illegal
+ * ones), which players could see each of them, and the outcome of every battle.
+ *
+ * Like MoveBuffer, events are packed into a single int array, and the object can be re-used.
+ */
+
+public class TurnEvents
+{
+    private static final int SLOT_MOVE_INDEX = 0;           // index of the move in the executed MoveBuffer
+    private static final int SLOT_VISIBLE_TO = 1;           // bit i is set if the move was visible to player i
+    private static final int SLOT_ATTACKING_ARMIES = 2;     // -1 if there was no battle
+    private static final int SLOT_DEFENDING_ARMIES = 3;
+    private static final int SLOT_ATTACKERS_DESTROYED = 4;  // as decided by the battle (before
+    private static final int SLOT_DEFENDERS_DESTROYED = 5;  //   applying the limits of the armies involved)
+    private static final int SLOT_CONQUERED = 6;            // 1 if the target region changed owner
+    private static final int SLOTS_PER_EVENT = 7;
+
+    private int[] data;
+    private int size;
+
+    public TurnEvents() {
+        this.data = new int[64 * SLOTS_PER_EVENT];
+        this.size = 0;
+    }
+
+    /**
+     * Records a move executed without a battle
+     */
+    public void add(int moveIndex, int visibleTo) {
+        add(moveIndex, visibleTo, -1, 0, 0, 0, false);
+    }
+
+    public void add(int moveIndex, int visibleTo, int attackingArmies, int defendingArmies,
+            int attackersDestroyed, int defendersDestroyed, boolean conquered) {
+        int offset = this.size * SLOTS_PER_EVENT;
+        if (offset + SLOTS_PER_EVENT > this.data.length) {
+            this.data = Arrays.copyOf(this.data, this.data.length * 2);
+        }
+        this.data[offset + SLOT_MOVE_INDEX] = moveIndex;
+        this.data[offset + SLOT_VISIBLE_TO] = visibleTo;
+        this.data[offset + SLOT_ATTACKING_ARMIES] = attackingArmies;
+        this.data[offset + SLOT_DEFENDING_ARMIES] = defendingArmies;
+        this.data[offset + SLOT_ATTACKERS_DESTROYED] = attackersDestroyed;
+        this.data[offset + SLOT_DEFENDERS_DESTROYED] = defendersDestroyed;
+        this.data[offset + SLOT_CONQUERED] = conquered ? 1 : 0;
+        this.size++;
+    }
+
+    public void clear() {
+        this.size = 0;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @return : true if both have the same events in the same order
+     */
+    public boolean contentEquals(TurnEvents other) {
+        return Arrays.equals(this.data, 0, this.size * SLOTS_PER_EVENT, other.data, 0, other.size * SLOTS_PER_EVENT);
+    }
+
+    public int getMoveIndex(int event) {
+        return get(event, SLOT_MOVE_INDEX);
+    }
+
+    /**
+     * @return : bit i is set if the move was visible to player i
+     */
+    public int getVisibleTo(int event) {
+        return get(event, SLOT_VISIBLE_TO);
+    }
+
+    public boolean isVisibleTo(int event, int player) {
+        return (get(event, SLOT_VISIBLE_TO) & (1 << player)) != 0;
+    }
+
+    public boolean hasBattle(int event) {
+        return get(event, SLOT_ATTACKING_ARMIES) >= 0;
+    }
+
+    public int getAttackingArmies(int event) {
+        return get(event, SLOT_ATTACKING_ARMIES);
+    }
+
+    public int getDefendingArmies(int event) {
+        return get(event, SLOT_DEFENDING_ARMIES);
+    }
+
+    public int getAttackersDestroyed(int event) {
+        return get(event, SLOT_ATTACKERS_DESTROYED);
+    }
+
+    public int getDefendersDestroyed(int event) {
+        return get(event, SLOT_DEFENDERS_DESTROYED);
+    }
+
+    public boolean isConquered(int event) {
+        return get(event, SLOT_CONQUERED) != 0;
+    }
+
+    private int get(int event, int slot) {
+        if (event < 0 || event >= this.size) {
+            throw new IndexOutOfBoundsException("Event index " + event + " is out of range, size " + this.size);
+        }
+        return this.data[event * SLOTS_PER_EVENT + slot];
+    }
+}
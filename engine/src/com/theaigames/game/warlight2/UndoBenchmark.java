@@ -0,0 +1,132 @@
+// Copyright 2015 theaigames.com (developers@theaigames.com)
+
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+
+//        http://www.apache.org/licenses/LICENSE-2.0
+
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+//    For the full copyright and license information, please view the LICENSE
+//    file that was distributed with this source code.
+
+package com.theaigames.game.warlight2;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import com.theaigames.game.warlight2.bots.GreedyExpansionPolicy;
+import com.theaigames.game.warlight2.bots.Policy;
+import com.theaigames.game.warlight2.map.MapJSON;
+import com.theaigames.game.warlight2.map.Settings;
+import com.theaigames.game.warlight2.move.MoveBuffer;
+
+/**
+ * UndoBenchmark class
+ *
+ * Times cycles of GameState.applyInPlace() with an UndoJournal followed by GameState.undo(), as
+ * a search does them. The position is fixed: a grid map, on which each player owns the two
+ * outermost columns on its side with 5 armies, and the other regions are neutral. The moves of
+ * both players come from the greedy expansion policy, drawn once from the seed for a number of
+ * rounds which are then applied in turn, so the time is that of applying and undoing (and of
+ * copying the moves, which are changed by applying them), not that of choosing moves.
+ * After every undo the state is checked to be back in the starting position.
+ *
+ * Usage: UndoBenchmark [seed]
+ */
+
+public class UndoBenchmark
+{
+    private static final int NUM_MOVE_SETS = 64;      // different rounds of moves applied in turn
+    private static final int CYCLES = 20000;          // apply/undo cycles per measurement
+    private static final int MEASUREMENTS = 10;       // the fastest measurement is reported
+
+    public static void main(String args[]) {
+        long seed = (args.length > 0) ? Long.parseLong(args[0]) : 1;
+
+        System.out.println("map      regions  moves/round  cycles/s  us/cycle");
+        run(6, 6, seed);
+        run(20, 20, seed);
+    }
+
+    private static void run(int width, int height, long seed) {
+        GameState state = createPosition(width, height);
+        long startHash = state.getHash();
+        SplitMix64 rnd = new SplitMix64(seed);
+
+        Policy policy = new GreedyExpansionPolicy();
+        MoveBuffer[] moveSets = new MoveBuffer[NUM_MOVE_SETS];
+        long numMoves = 0;
+        for (int i = 0; i < NUM_MOVE_SETS; i++) {
+            moveSets[i] = new MoveBuffer(64);
+            for (int player = 0; player < state.getNumPlayers(); player++) {
+                policy.getMoves(state, player, rnd, moveSets[i]);
+            }
+            numMoves += moveSets[i].size();
+        }
+
+        UndoJournal journal = new UndoJournal();
+        MoveBuffer moves = new MoveBuffer(64);
+        long bestTime = Long.MAX_VALUE;
+        for (int measurement = 0; measurement < MEASUREMENTS; measurement++) {
+            long timeStart = System.nanoTime();
+            for (int cycle = 0; cycle < CYCLES; cycle++) {
+                moves.copyFrom(moveSets[cycle % NUM_MOVE_SETS]);  // applying a round changes its moves
+                state.applyInPlace(moves, rnd, rnd, null, journal);
+                state.undo(journal);
+                if (state.getHash() != startHash) {
+                    throw new IllegalStateException("Undo did not restore the starting position");
+                }
+            }
+            bestTime = Math.min(bestTime, System.nanoTime() - timeStart);
+        }
+
+        System.out.format("%2dx%-2d %10d %12.1f %9.0f %9.2f\n", width, height, width * height,
+                (double) numMoves / NUM_MOVE_SETS, CYCLES * 1e9 / bestTime, bestTime / 1e3 / CYCLES);
+    }
+
+    /**
+     * @return : the starting position on a grid map, in which each row is a bonus worth 2 armies
+     */
+    private static GameState createPosition(int width, int height) {
+        JSONArray territories = new JSONArray();
+        JSONArray bonuses = new JSONArray();
+        for (int y = 0; y < height; y++) {
+            JSONArray row = new JSONArray();
+            for (int x = 0; x < width; x++) {
+                int id = y * width + x + 1;
+                JSONArray neighbors = new JSONArray();
+                if (x > 0) neighbors.put(id - 1);
+                if (x < width - 1) neighbors.put(id + 1);
+                if (y > 0) neighbors.put(id - width);
+                if (y < height - 1) neighbors.put(id + width);
+                territories.put(new JSONObject().put("id", id).put("name", "T" + id).put("connectedTo", neighbors));
+                row.put(id);
+            }
+            bonuses.put(new JSONObject().put("id", y + 1).put("name", "B" + (y + 1)).put("value", 2)
+                    .put("territoryIDs", row));
+        }
+        JSONObject mapJSON = new JSONObject().put("name", "grid" + width + "x" + height)
+                .put("territories", territories).put("bonuses", bonuses);
+
+        GameState state = new GameState(MapJSON.createMap(mapJSON), new Settings(), "player1", "player2");
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int id = y * width + x + 1;
+                if (x < 2) {
+                    state.setRegion(id, 0, 5);
+                } else if (x >= width - 2) {
+                    state.setRegion(id, 1, 5);
+                } else {
+                    state.setRegion(id, GameState.NEUTRAL, 2);
+                }
+            }
+        }
+        return state;
+    }
+}
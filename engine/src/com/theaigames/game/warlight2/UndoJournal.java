@@ -0,0 +1,116 @@
+// Copyright 2015 theaigames.com (developers@theaigames.com)
+
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+
+//        http://www.apache.org/licenses/LICENSE-2.0
+
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+//    For the full copyright and license information, please view the LICENSE
+//    file that was distributed with this source code.
+
+package com.theaigames.game.warlight2;
+
+import java.util.Arrays;
+
+/**
+ * UndoJournal class
+ *
+ * Records the changes made to a GameState while executing moves, so that they can be rolled back
+ * with GameState.undo(). Every execution of a round is a frame; frames can be nested (e.g. one
+ * per level of a search tree) and are undone last in, first out. Undoing a round costs
+ * O(changes made in that round), instead of copying the whole state before every try.
+ *
+ * A journal belongs to a single state (and thread), and can be re-used after clear().
+ */
+
+public class UndoJournal
+{
+    private static final int SLOT_REGION = 0;
+    private static final int SLOT_OWNER = 1;   // owner before the change
+    private static final int SLOT_ARMIES = 2;  // armies before the change
+    private static final int SLOTS_PER_ENTRY = 3;
+
+    private int[] entries;
+    private int size;
+
+    private int[] frameStarts;   // frame -> index of its first entry
+    private int[] frameRoundNrs; // frame -> round number of the state before the frame
+    private int numFrames;
+
+    public UndoJournal() {
+        this.entries = new int[256 * SLOTS_PER_ENTRY];
+        this.frameStarts = new int[16];
+        this.frameRoundNrs = new int[16];
+    }
+
+    /**
+     * Starts recording a new round
+     */
+    void beginFrame(int roundNr) {
+        if (this.numFrames == this.frameStarts.length) {
+            this.frameStarts = Arrays.copyOf(this.frameStarts, this.numFrames * 2);
+            this.frameRoundNrs = Arrays.copyOf(this.frameRoundNrs, this.numFrames * 2);
+        }
+        this.frameStarts[this.numFrames] = this.size;
+        this.frameRoundNrs[this.numFrames] = roundNr;
+        this.numFrames++;
+    }
+
+    /**
+     * Records the state of a region before it is changed
+     */
+    void record(int regionID, int owner, int armies) {
+        int offset = this.size * SLOTS_PER_ENTRY;
+        if (offset + SLOTS_PER_ENTRY > this.entries.length) {
+            this.entries = Arrays.copyOf(this.entries, this.entries.length * 2);
+        }
+        this.entries[offset + SLOT_REGION] = regionID;
+        this.entries[offset + SLOT_OWNER] = owner;
+        this.entries[offset + SLOT_ARMIES] = armies;
+        this.size++;
+    }
+
+    /**
+     * Rolls back the changes of the last frame, and removes it from the journal
+     */
+    void undoFrame(GameState state) {
+        if (this.numFrames == 0) {
+            throw new IllegalStateException("There is nothing to undo");
+        }
+        this.numFrames--;
+        int frameStart = this.frameStarts[this.numFrames];
+        for (int entry = this.size - 1; entry >= frameStart; entry--) {
+            int offset = entry * SLOTS_PER_ENTRY;
+            state.restoreRegion(this.entries[offset + SLOT_REGION], this.entries[offset + SLOT_OWNER],
+                    this.entries[offset + SLOT_ARMIES]);
+        }
+        this.size = frameStart;
+        state.restoreRoundNr(this.frameRoundNrs[this.numFrames]);
+    }
+
+    /**
+     * @return : the number of rounds that can be undone
+     */
+    public int getNumFrames() {
+        return this.numFrames;
+    }
+
+    /**
+     * @return : the number of region changes recorded
+     */
+    public int size() {
+        return this.size;
+    }
+
+    public void clear() {
+        this.size = 0;
+        this.numFrames = 0;
+    }
+}
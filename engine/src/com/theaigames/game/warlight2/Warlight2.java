@@ -19,7 +19,7 @@ package com.theaigames.game.warlight2;
 
 import java.io.*;
 import java.util.ArrayList;
-import java.util.Random;
+import java.util.SplittableRandom;
 import java.util.Scanner;
 import java.util.logging.Logger;
 import java.util.logging.Level;
@@ -32,7 +32,9 @@ import java.lang.Thread;
 import com.theaigames.engine.Engine;
 import com.theaigames.engine.Logic;
 import com.theaigames.engine.io.IOPlayer;
+import com.theaigames.engine.io.OutputStreamFeeder;
 
+import com.theaigames.game.warlight2.bots.BuiltinBot;
 import com.theaigames.game.warlight2.map.Map;
 import com.theaigames.game.warlight2.map.MapJSON;
 import com.theaigames.game.warlight2.map.Settings;
@@ -50,6 +52,9 @@ import org.json.JSONObject;
 
 public class Warlight2 implements Logic
 {
+    // bot commands starting with this are not started as a process, but name a built-in bot (see BuiltinBot.forName())
+    public static final String BUILTIN_BOT_PREFIX = "builtin:";
+
     private String gameID;
 
     private Settings settings;
@@ -60,21 +65,45 @@ public class Warlight2 implements Logic
 
     private Processor processor;
     private Player player1, player2;
+    private BuiltinBot builtinBot1, builtinBot2;  // null for bot processes
+    private ProcessorSnapshot startSnapshot;      // null to start a new game
+    private int roundOffset;                      // the engine counts rounds from 1, also when starting from a snapshot
     private int maxRounds;
+    private File replayFile;                      // null if no replay is written
+    private boolean replayArchive;                // the replay file is the directory of an archive
+    private String[] botCommands;                 // as recorded in the replay
+    private ReplayWriter replayWriter;
+    private ByteArrayOutputStream replayBuffer;   // holds the replay until the game is appended to an archive
+    private File featureDirectory;                // null if no features are exported
+    private FeatureWriter featureWriter;
+
+    // all random numbers used in a game come from these two (and streams split from them),
+    // so a game is fully determined by the two seeds and bot replies
+    private SplitMix64 mapGenerationRnd;
+    private SplitMix64 gameplayRnd;
+    private final int randomMapSeed;
+    private final int randomGameSeed;
 
-    private Random mapGenerationRnd = new Random();
-    private Random gameplayRnd = new Random();
-
+    /**
+     * @param randomMapSeed  : seed for wasteland and pickable regions generation, a random seed is used if not positive
+     * @param randomGameSeed : seed for turn order and battles, a random seed is used if not positive
+     */
     public Warlight2(String gameID, int randomMapSeed, int randomGameSeed, String mapFile, String settingsFile,
             String playerName1, String playerName2) {
-        if (randomMapSeed > 0) {
-            System.out.format("Using wasteland generation/available regions seed: %d\n", randomMapSeed);
-            this.mapGenerationRnd.setSeed(randomMapSeed);
+        // note: seeds are always printed, so that any game can be re-played
+        if (randomMapSeed <= 0) {
+            randomMapSeed = generateSeed();
         }
-        if (randomGameSeed > 0) {
-            System.out.format("Using turn order/battle seed: %d\n", randomGameSeed);
-            this.gameplayRnd.setSeed(randomGameSeed);
+        System.out.format("Using wasteland generation/available regions seed: %d\n", randomMapSeed);
+        this.mapGenerationRnd = new SplitMix64(randomMapSeed);
+
+        if (randomGameSeed <= 0) {
+            randomGameSeed = generateSeed();
         }
+        System.out.format("Using turn order/battle seed: %d\n", randomGameSeed);
+        this.gameplayRnd = new SplitMix64(randomGameSeed);
+        this.randomMapSeed = randomMapSeed;
+        this.randomGameSeed = randomGameSeed;
 
         this.gameID = gameID;
         this.mapFile = mapFile;
@@ -86,6 +115,67 @@ public class Warlight2 implements Logic
         System.out.format("Starting game ID = [%s]%n", this.gameID);
     }
 
+    /**
+     * Makes players play with a built-in bot instead of a bot process
+     *
+     * @param builtinBot1 : the built-in bot of player 1, or null if player 1 is a bot process
+     * @param builtinBot2 : the built-in bot of player 2, or null if player 2 is a bot process
+     */
+    public void setBuiltinBots(BuiltinBot builtinBot1, BuiltinBot builtinBot2) {
+        this.builtinBot1 = builtinBot1;
+        this.builtinBot2 = builtinBot2;
+    }
+
+    /**
+     * Makes the game continue from the given snapshot, instead of starting with picking starting regions
+     * (the map file and settings must be the ones of the game the snapshot was taken from)
+     */
+    public void setStartSnapshot(ProcessorSnapshot snapshot) {
+        this.startSnapshot = snapshot;
+        this.roundOffset = snapshot.getRoundNr() - 1;
+    }
+
+    /**
+     * Makes the game write a replay (see ReplayWriter) to the given file
+     *
+     * @param bot1Cmd : the command of the bot process of player 1 (or the built-in bot), as recorded in the replay
+     * @param bot2Cmd : the same for player 2
+     */
+    public void setReplayFile(File replayFile, String bot1Cmd, String bot2Cmd) {
+        this.replayFile = replayFile;
+        this.replayArchive = false;
+        this.botCommands = new String[] { bot1Cmd, bot2Cmd };
+    }
+
+    /**
+     * Makes the game append its replay to the archive (see ReplayArchive) in the given directory, which
+     * is created if it does not exist yet
+     *
+     * @see #setReplayFile(File, String, String)
+     */
+    public void setReplayArchive(File archiveDirectory, String bot1Cmd, String bot2Cmd) {
+        setReplayFile(archiveDirectory, bot1Cmd, bot2Cmd);
+        this.replayArchive = true;
+    }
+
+    /**
+     * Makes the game export the features of every round (see FeatureWriter) to the given directory
+     */
+    public void setFeatureDirectory(File featureDirectory) {
+        this.featureDirectory = featureDirectory;
+    }
+
+    /**
+     * @return : a snapshot of the game between two rounds, see Processor.createSnapshot()
+     */
+    public ProcessorSnapshot createSnapshot() {
+        return this.processor.createSnapshot();
+    }
+
+    private static int generateSeed() {
+        return new SplittableRandom().nextInt(1, Integer.MAX_VALUE);
+    }
+
     /**
      * sets up everything that's needed before a round can be played
      *
@@ -97,8 +187,9 @@ public class Warlight2 implements Logic
     {
         System.out.println("Setting up game...");
 
-        // Determine array size is two players
-        if (players.size() != 2) {
+        // Determine array size is two players (the bot processes given, and the built-in bots)
+        int numBuiltinBots = ((this.builtinBot1 != null) ? 1 : 0) + ((this.builtinBot2 != null) ? 1 : 0);
+        if (players.size() + numBuiltinBots != 2) {
             throw new IncorrectPlayerCountException("Should be two players");
         }
 
@@ -109,19 +200,58 @@ public class Warlight2 implements Logic
             this.settings = new Settings();
         }
 
-        this.player1 = new Player(playerName1, players.get(0), this.settings);
-        this.player2 = new Player(playerName2, players.get(1), this.settings);
+        // the map file may also be a scenario, which comes with its own map and (optionally) settings
+        JSONObject mapJSON = new JSONObject(getRAWFileContents(this.mapFile));
+        Scenario scenario = null;
+        if (Scenario.isScenario(mapJSON)) {
+            scenario = Scenario.fromJSON(mapJSON, new File(this.mapFile).getAbsoluteFile().getParentFile(), this.settings);
+            this.settings = scenario.getSettings();
+        }
+
+        this.player1 = (this.builtinBot1 != null)
+                ? new Player(playerName1, this.builtinBot1, this.settings)
+                : new Player(playerName1, players.get(0), this.settings);
+        this.player2 = (this.builtinBot2 != null)
+                ? new Player(playerName2, this.builtinBot2, this.settings)
+                : new Player(playerName2, players.get(players.size() - 1), this.settings);
 
         // init the base (no wastelands, no armies) map from the file
-        Map baseMap = MapJSON.createMap(new JSONObject(getRAWFileContents(this.mapFile)));
+        Map baseMap = (scenario != null) ? scenario.createMap() : MapJSON.createMap(mapJSON);
 
         this.maxRounds = settings.getMaxRounds(baseMap.getRegions().size());
 
         System.out.println("Customizing the map (wastelands, pickable regions)...");
         this.processor = new Processor(baseMap, this.settings, this.gameplayRnd, this.mapGenerationRnd, player1, player2);
 
-        System.out.println("Starting game...");
-        this.processor.getPicksAndInitGame();
+        if (this.replayFile != null) {
+            OutputStream replayOut;
+            if (this.replayArchive) {
+                this.replayBuffer = new ByteArrayOutputStream();
+                replayOut = this.replayBuffer;
+            } else {
+                replayOut = new FileOutputStream(this.replayFile);
+            }
+            this.replayWriter = new ReplayWriter(replayOut, this.randomMapSeed,
+                    this.randomGameSeed, this.settings, baseMap, new String[] { playerName1, playerName2 }, this.botCommands);
+            this.processor.setReplayWriter(this.replayWriter);
+        }
+
+        if (scenario != null) {
+            setStartSnapshot(scenario.createSnapshot(playerName1, playerName2, this.gameplayRnd));
+        }
+
+        if (this.startSnapshot != null) {
+            System.out.println("Continuing game from round " + this.startSnapshot.getRoundNr() + "...");
+            this.processor.restoreSnapshot(this.startSnapshot);
+        } else {
+            System.out.println("Starting game...");
+            this.processor.getPicksAndInitGame();
+        }
+
+        if (this.featureDirectory != null) {
+            this.featureWriter = new FeatureWriter(this.featureDirectory, this.processor.getState());
+            this.processor.setFeatureWriter(this.featureWriter);
+        }
     }
 
     /**
@@ -131,6 +261,7 @@ public class Warlight2 implements Logic
      */
     @Override
     public void playRound(int roundNumber) {
+        roundNumber += this.roundOffset;
         System.out.println("------ Playing round #" + roundNumber + " ------");
 
         this.processor.playRound(roundNumber);
@@ -141,12 +272,32 @@ public class Warlight2 implements Logic
      */
     @Override
     public boolean isGameWon() {
+        if (this.player1.hasCrashed() || this.player2.hasCrashed()) {
+            return true;
+        }
         if (this.processor.getWinner() != null || this.processor.getRoundNr() > this.maxRounds) {
             return true;
         }
         return false;
     }
 
+    /**
+     * A player whose bot process has crashed forfeits the game (or the game
+     * is a draw if both bots have crashed).
+     *
+     * @return : the winner of the game, null if the game is not over or is a draw
+     */
+    private Player getWinner() {
+        boolean player1Crashed = this.player1.hasCrashed();
+        boolean player2Crashed = this.player2.hasCrashed();
+        if (player1Crashed || player2Crashed) {
+            if (player1Crashed && player2Crashed)
+                return null;
+            return player1Crashed ? this.player2 : this.player1;
+        }
+        return this.processor.getWinner();
+    }
+
     /**
      * Reads the contents of a given file into a string
      *
@@ -180,8 +331,11 @@ public class Warlight2 implements Logic
      */
     @Override
     public void finish() throws Exception {
-        this.player1.getBot().finish();
-        this.player2.getBot().finish();
+        for (Player player : new Player[] { this.player1, this.player2 }) {
+            if (!player.isBuiltin()) {
+                player.getBot().finish();
+            }
+        }
         Thread.sleep(100);
 
         // write everything
@@ -201,16 +355,50 @@ public class Warlight2 implements Logic
      */
     public void saveGame() {
 
-        Player winner = this.processor.getWinner();
+        Player winner = this.getWinner();
         //int score = this.processor.getRoundNr() - 1;
 
+        for (Player player : new Player[] { this.player1, this.player2 }) {
+            if (player.hasCrashed()) {
+                System.out.format("Player [%s] bot process has crashed (exit code %d), last stderr output:%n%s%n",
+                        player.getName(), player.getBot().getProcess().exitValue(), player.getBot().getStderrTail());
+            }
+        }
+
         if (winner != null) {
             System.out.println("winner: " + winner.getName());
         } else {
             System.out.println("winner: draw");
         }
 
+        for (Player player : new Player[] { this.player1, this.player2 }) {
+            if (player.isBuiltin()) {
+                continue;
+            }
+            OutputStreamFeeder feeder = player.getBot().getStdinFeeder();
+            System.out.format("Player [%s] input stalls: %d (%d ms total)%n",
+                    player.getName(), feeder.getStalls(), feeder.getStallTime());
+        }
+
         System.out.println("Saving the game...");
+        int winnerIndex = (winner == this.player1) ? 0 : (winner == this.player2) ? 1 : -1;
+        if (this.featureWriter != null) {
+            this.featureWriter.close(winnerIndex);
+        }
+        if (this.replayWriter != null) {
+            try {
+                this.replayWriter.writeEnd(winnerIndex, this.processor.getRoundNr() - 1, this.processor.getStateHash());
+            } finally {
+                this.replayWriter.close();
+            }
+            if (this.replayBuffer != null) {
+                try {
+                    new ReplayArchiveWriter(this.replayFile).append(this.gameID, this.replayBuffer.toByteArray());
+                } catch (IOException e) {
+                    System.err.println("Error appending the replay to the archive: " + e);
+                }
+            }
+        }
         // do stuff here if you want to save results
     }
 
@@ -233,11 +421,27 @@ public class Warlight2 implements Logic
         return log;
     }
 
+    /**
+     * @return : the built-in bot named by the bot command, or null if the command starts a bot process
+     */
+    static BuiltinBot getBuiltinBot(String botCmd) {
+        if (!botCmd.startsWith(BUILTIN_BOT_PREFIX)) {
+            return null;
+        }
+        return BuiltinBot.forName(botCmd.substring(BUILTIN_BOT_PREFIX.length()));
+    }
+
     /**
      * main
      *
-     * @param args : game id, the map file and the settings file, along with the commands that
-     *               start the bot processes
+     * @param args : game id, the map file (or a scenario file, see Scenario) and the settings file,
+     *               along with the commands that start the bot processes (or "builtin:random",
+     *               "builtin:greedy" or "builtin:bonus" for a built-in bot); optionally followed by
+     *               - a directory to write full bot logs to (or "" for none)
+     *               - a file to write a replay of the game to (see ReplayReader), or the directory of
+     *                 an archive to append it to if the path ends with a '/' (or "" for none)
+     *               - a directory to export the features of the rounds to (see FeatureWriter, or ""
+     *                 for none)
      * @throws Exception
      */
     public static void main(String args[]) throws Exception {
@@ -258,12 +462,39 @@ public class Warlight2 implements Logic
         // Construct engine
         Engine engine = new Engine(botCommunicationLogger);
 
+        if (args.length > 7 && !args[7].isEmpty()) {
+            // full bot logs go to a separate directory for each game
+            // (stderr is written there directly, without passing through the engine)
+            File botLogDirectory = new File(args[7], gameID);
+            botLogDirectory.mkdirs();
+            engine.setBotLogDirectory(botLogDirectory);
+            engine.setBotStderrMode(Engine.BotStderrMode.FILE);
+        }
+
         // Set logic
-        engine.setLogic(new Warlight2(gameID, randomMapSeed, randomGameSeed, mapFile, settingsFile, bot1Name, bot2Name));
+        Warlight2 logic = new Warlight2(gameID, randomMapSeed, randomGameSeed, mapFile, settingsFile, bot1Name, bot2Name);
+        logic.setBuiltinBots(getBuiltinBot(bot1Cmd), getBuiltinBot(bot2Cmd));
+        if (args.length > 8 && !args[8].isEmpty()) {
+            // stated explicitly rather than taken from the file system, so a new archive can be started
+            if (args[8].endsWith("/") || args[8].endsWith(File.separator)) {
+                logic.setReplayArchive(new File(args[8]), bot1Cmd, bot2Cmd);
+            } else {
+                logic.setReplayFile(new File(args[8]), bot1Cmd, bot2Cmd);
+            }
+        }
+        if (args.length > 9 && !args[9].isEmpty()) {
+            // like the bot logs, in a separate directory for each game
+            logic.setFeatureDirectory(new File(args[9], gameID));
+        }
+        engine.setLogic(logic);
 
-        // Add players
-        engine.addPlayer(bot1Cmd, bot1Name);
-        engine.addPlayer(bot2Cmd, bot2Name);
+        // Add players (only the ones with a bot process)
+        if (!bot1Cmd.startsWith(BUILTIN_BOT_PREFIX)) {
+            engine.addPlayer(bot1Cmd, bot1Name);
+        }
+        if (!bot2Cmd.startsWith(BUILTIN_BOT_PREFIX)) {
+            engine.addPlayer(bot2Cmd, bot2Name);
+        }
 
         engine.start();
     }
@@ -0,0 +1,60 @@
+// Copyright 2015 theaigames.com (developers@theaigames.com)
+
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+
+//        http://www.apache.org/licenses/LICENSE-2.0
+
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+//    For the full copyright and license information, please view the LICENSE
+//    file that was distributed with this source code.
+
+
+package com.theaigames.game.warlight2;
+
+/**
+ * Zobrist class
+ *
+ * The random keys from which the hash of a GameState is built (see GameState.getHash()):
+ * the hash is the XOR of a key for the owner and a key for the armies of every region, and a
+ * key for the round number. The keys are computed from their arguments with a fixed mixing
+ * function instead of being drawn from a random number generator, so there are no tables to
+ * size, and hashes are the same in every run of the engine (e.g. to compare games and replays).
+ */
+
+public final class Zobrist
+{
+    private static final long OWNER = 0x1L << 60;
+    private static final long ARMIES = 0x2L << 60;
+    private static final long ROUND = 0x3L << 60;
+
+    private Zobrist() {}
+
+    /**
+     * @param owner : player index, or GameState.NEUTRAL
+     */
+    public static long getOwnerKey(int regionID, int owner) {
+        return mix(OWNER | ((long) regionID << 32) | (owner & 0xFFFFFFFFL));
+    }
+
+    public static long getArmiesKey(int regionID, int armies) {
+        return mix(ARMIES | ((long) regionID << 32) | (armies & 0xFFFFFFFFL));
+    }
+
+    public static long getRoundKey(int roundNr) {
+        return mix(ROUND | (roundNr & 0xFFFFFFFFL));
+    }
+
+    // the finalizer of SplitMix64: every bit of the input affects every bit of the output
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
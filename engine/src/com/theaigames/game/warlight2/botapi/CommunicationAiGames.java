@@ -1,7 +1,6 @@
 package com.theaigames.game.warlight2.botapi;
 
 import java.util.Collection;
-import java.util.stream.Collectors;
 import java.util.Set;
 import java.util.HashSet;
 
@@ -15,6 +14,7 @@ import com.theaigames.game.warlight2.map.Map;
 import com.theaigames.game.warlight2.map.Region;
 import com.theaigames.game.warlight2.map.SuperRegion;
 import com.theaigames.game.warlight2.map.Settings;
+import com.theaigames.game.warlight2.map.VisibleMapView;
 import com.theaigames.game.warlight2.move.AttackTransferMove;
 import com.theaigames.game.warlight2.move.Move;
 import com.theaigames.game.warlight2.move.PlaceArmiesMove;
@@ -51,11 +51,11 @@ public class CommunicationAiGames extends CommunicationBaseParser implements Bot
 
     @Override
     public void sendSettings(Player player, Player otherPlayer, int maxRounds) {
-        player.sendInfo("settings timebank " + settings.getMaxTimebank());
-        player.sendInfo("settings time_per_move " + settings.getExtraTimePerMove());
-        player.sendInfo("settings max_rounds " + maxRounds);
-        player.sendInfo("settings your_bot " + player.getName());
-        player.sendInfo("settings opponent_bot " + otherPlayer.getName());
+        player.queueInfo("settings timebank " + settings.getMaxTimebank());
+        player.queueInfo("settings time_per_move " + settings.getExtraTimePerMove());
+        player.queueInfo("settings max_rounds " + maxRounds);
+        player.queueInfo("settings your_bot " + player.getName());
+        player.queueInfo("settings opponent_bot " + otherPlayer.getName());
     }
 
     @Override
@@ -73,7 +73,7 @@ public class CommunicationAiGames extends CommunicationBaseParser implements Bot
             int reward = superRegion.getArmiesReward();
             superRegionsString = superRegionsString.concat(" " + id + " " + reward);
         }
-        player.sendInfo(superRegionsString);
+        player.queueInfo(superRegionsString);
     }
 
     private void sendRegionsString(Player player, Map map) {
@@ -84,7 +84,7 @@ public class CommunicationAiGames extends CommunicationBaseParser implements Bot
             int superRegionId = map.getRegionBonuses(region).iterator().next();
             regionsString = regionsString.concat(" " + id + " " + superRegionId);
         }
-        player.sendInfo(regionsString);
+        player.queueInfo(regionsString);
     }
 
     private void sendNeighborsString(Player player, Map map) {
@@ -103,7 +103,7 @@ public class CommunicationAiGames extends CommunicationBaseParser implements Bot
                 neighborsString = neighborsString.concat(" " + id + neighbors);
             }
         }
-        player.sendInfo(neighborsString);
+        player.queueInfo(neighborsString);
     }
 
     private void sendWastelandsString(Player player, Map map) {
@@ -114,7 +114,7 @@ public class CommunicationAiGames extends CommunicationBaseParser implements Bot
                 wastelandsString = wastelandsString.concat(" " + id);
             }
         }
-        player.sendInfo(wastelandsString);
+        player.queueInfo(wastelandsString);
     }
 
     //===================================================================================
@@ -125,9 +125,9 @@ public class CommunicationAiGames extends CommunicationBaseParser implements Bot
 
         int maxSubmittedPicks = numberOfStartingRegions * 2;
 
-        player.sendInfo("settings starting_regions " + asSeparatedString(pickableRegions, " "));
+        player.queueInfo("settings starting_regions " + asSeparatedString(pickableRegions, " "));
 
-        player.sendInfo("settings starting_pick_amount " + maxSubmittedPicks);
+        player.queueInfo("settings starting_pick_amount " + maxSubmittedPicks);
 
         List<Integer> picks = new LinkedList<>();
 
@@ -155,7 +155,7 @@ public class CommunicationAiGames extends CommunicationBaseParser implements Bot
     //===================================================================================
 
     @Override
-    public void sendTurnStartUpdate(Player player, List<Move> visibleMoves, Map visibleMapForPlayer) {
+    public void sendTurnStartUpdate(Player player, List<Move> visibleMoves, VisibleMapView visibleMapForPlayer) {
         sendStartingArmiesInfo(player);
         sendUpdateMapInfo(player, visibleMapForPlayer);
         sendVisibleMovesInfo(player, visibleMoves);
@@ -167,7 +167,7 @@ public class CommunicationAiGames extends CommunicationBaseParser implements Bot
      * @param player : player to send the info to
      */
     private void sendStartingArmiesInfo(Player player) {
-        player.sendInfo("settings starting_armies " + player.getArmiesLeft());
+        player.queueInfo("settings starting_armies " + player.getArmiesLeft());
     }
 
     /**
@@ -175,14 +175,13 @@ public class CommunicationAiGames extends CommunicationBaseParser implements Bot
      *
      * @param player : player to send the info to
      */
-    private void sendUpdateMapInfo(Player player, Map visibleMapForPlayer) {
-        String updateMapString = "update_map";
-        for (Region region : visibleMapForPlayer.getRegions()) {
-            if (!region.isFogged()) {
-                updateMapString += " " + region.getId() + " " + region.getOwnerName() + " " + region.getArmies();
-            }
-        }
-        player.sendInfo(updateMapString);
+    private void sendUpdateMapInfo(Player player, VisibleMapView visibleMapForPlayer) {
+        StringBuilder updateMapString = new StringBuilder("update_map");
+        visibleMapForPlayer.forEachVisibleRegion(region -> updateMapString
+                .append(' ').append(region.getId())
+                .append(' ').append(region.getOwnerName())
+                .append(' ').append(region.getArmies()));
+        player.queueInfo(updateMapString.toString());
     }
 
     /**
@@ -205,7 +204,7 @@ public class CommunicationAiGames extends CommunicationBaseParser implements Bot
 
         opponentMovesString = opponentMovesString.substring(0, opponentMovesString.length() - 1);
 
-        player.sendInfo(opponentMovesString);
+        player.queueInfo(opponentMovesString);
     }
 
     //===================================================================================
@@ -230,12 +229,9 @@ public class CommunicationAiGames extends CommunicationBaseParser implements Bot
 
         String response = player.getResponse();
 
-        List<? extends Move> parsedMoves = parseMoves(response, player);
-
-        // convert to specifically deployment orders
+        // the parsed list is returned as-is, without copying it into a typed list
         @SuppressWarnings("unchecked")
-        List<T> typedMoves = parsedMoves.stream()
-                .map(m -> (T) m).collect(Collectors.toCollection(LinkedList::new));
+        List<T> typedMoves = (List<T>) parseMoves(response, player);
 
         return typedMoves;
     }
@@ -1,5 +1,6 @@
 package com.theaigames.game.warlight2.botapi;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
@@ -109,7 +110,7 @@ public abstract class CommunicationBaseParser
      * @return : list of moves
      */
     protected List<? extends Move> parseMoves(String input, Player player) {
-        LinkedList<Move> moves = new LinkedList<>();
+        List<Move> moves = new ArrayList<>();
 
         try {
             input = input.trim();
@@ -1,17 +1,16 @@
 package com.theaigames.game.warlight2.botapi;
 
 import java.util.Collection;
-import java.util.stream.Collectors;
 
 import java.util.Arrays;
 import java.util.List;
-import java.util.LinkedList;
 
 import com.theaigames.game.warlight2.BotCommunication;
 import com.theaigames.game.warlight2.Player;
 import com.theaigames.game.warlight2.map.Map;
 import com.theaigames.game.warlight2.map.MapJSON;
 import com.theaigames.game.warlight2.map.Settings;
+import com.theaigames.game.warlight2.map.VisibleMapView;
 import com.theaigames.game.warlight2.move.AttackTransferMove;
 import com.theaigames.game.warlight2.move.Move;
 import com.theaigames.game.warlight2.move.PlaceArmiesMove;
@@ -49,12 +48,12 @@ public class CommunicationV1 extends CommunicationBaseParser implements BotCommu
 
     @Override
     public void sendSettings(Player player, Player otherPlayer, int maxRounds) {
-        player.sendInfo("settings timebank " + settings.getMaxTimebank());
-        player.sendInfo("settings time_per_move " + settings.getExtraTimePerMove());
-        player.sendInfo("settings max_rounds " + maxRounds);
-        player.sendInfo("settings your_bot " + player.getName());
-        player.sendInfo("settings opponent_bot " + otherPlayer.getName());
-        player.sendInfo("settings all_settings_json " + removeNewlines(settings.getSettingsJSON().toString()));
+        player.queueInfo("settings timebank " + settings.getMaxTimebank());
+        player.queueInfo("settings time_per_move " + settings.getExtraTimePerMove());
+        player.queueInfo("settings max_rounds " + maxRounds);
+        player.queueInfo("settings your_bot " + player.getName());
+        player.queueInfo("settings opponent_bot " + otherPlayer.getName());
+        player.queueInfo("settings all_settings_json " + removeNewlines(settings.getSettingsJSON().toString()));
     }
 
     @Override
@@ -63,7 +62,7 @@ public class CommunicationV1 extends CommunicationBaseParser implements BotCommu
 
         String mapInfoString = "setup_map " + mapJSONString;
 
-        player.sendInfo(mapInfoString);
+        player.queueInfo(mapInfoString);
     }
 
     //===================================================================================
@@ -74,10 +73,10 @@ public class CommunicationV1 extends CommunicationBaseParser implements BotCommu
         // (since all players may pick the same, so with e.g. 3 picks player2 will end up with picks 2, 3 and 6)
         int maxSubmittedPicks = numberOfStartingRegions * 2;
 
-        player.sendInfo("settings starting_regions_amount " + numberOfStartingRegions);
-        player.sendInfo("settings maximum_number_of_picks " + maxSubmittedPicks);
+        player.queueInfo("settings starting_regions_amount " + numberOfStartingRegions);
+        player.queueInfo("settings maximum_number_of_picks " + maxSubmittedPicks);
 
-        player.sendInfo("settings starting_regions " + asSeparatedString(pickableRegions, " "));
+        player.queueInfo("settings starting_regions " + asSeparatedString(pickableRegions, " "));
 
         player.sendInfo("pick_starting_region " + player.getTimeBank());
 
@@ -94,7 +93,7 @@ public class CommunicationV1 extends CommunicationBaseParser implements BotCommu
     //===================================================================================
 
     @Override
-    public void sendTurnStartUpdate(Player player, List<Move> visibleMoves, Map visibleMapForPlayer) {
+    public void sendTurnStartUpdate(Player player, List<Move> visibleMoves, VisibleMapView visibleMapForPlayer) {
         sendStartingArmiesInfo(player);
         sendUpdateMapInfo(player, visibleMapForPlayer);
         sendVisibleMovesInfo(player, visibleMoves);
@@ -106,7 +105,7 @@ public class CommunicationV1 extends CommunicationBaseParser implements BotCommu
      * @param player : player to send the info to
      */
     private void sendStartingArmiesInfo(Player player) {
-        player.sendInfo("settings starting_armies " + player.getArmiesLeft());
+        player.queueInfo("settings starting_armies " + player.getArmiesLeft());
     }
 
     /**
@@ -114,10 +113,10 @@ public class CommunicationV1 extends CommunicationBaseParser implements BotCommu
      *
      * @param player : player to send the info to
      */
-    private void sendUpdateMapInfo(Player player, Map visibleMapForPlayer) {
+    private void sendUpdateMapInfo(Player player, VisibleMapView visibleMapForPlayer) {
         String standingsJSON = removeNewlines(MapJSON.getStandingsJSON(visibleMapForPlayer).toString());
 
-        player.sendInfo("update_map " + standingsJSON);
+        player.queueInfo("update_map " + standingsJSON);
     }
 
     /**
@@ -136,7 +135,7 @@ public class CommunicationV1 extends CommunicationBaseParser implements BotCommu
         }
         visibleMovesString = visibleMovesString.substring(0, visibleMovesString.length() - 1);
 
-        player.sendInfo(visibleMovesString);
+        player.queueInfo(visibleMovesString);
     }
 
     //===================================================================================
@@ -161,12 +160,9 @@ public class CommunicationV1 extends CommunicationBaseParser implements BotCommu
 
         String response = player.getResponse();
 
-        List<? extends Move> parsedMoves = parseMoves(response, player);
-
-        // convert to specifically deployment orders
+        // the parsed list is returned as-is, without copying it into a typed list
         @SuppressWarnings("unchecked")
-        List<T> typedMoves = parsedMoves.stream()
-                .map(m -> (T) m).collect(Collectors.toCollection(LinkedList::new));
+        List<T> typedMoves = (List<T>) parseMoves(response, player);
 
         return typedMoves;
     }
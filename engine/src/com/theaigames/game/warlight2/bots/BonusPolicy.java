@@ -0,0 +1,67 @@
+// Copyright 2015 theaigames.com (developers@theaigames.com)
+
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+
+//        http://www.apache.org/licenses/LICENSE-2.0
+
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+//    For the full copyright and license information, please view the LICENSE
+//    file that was distributed with this source code.
+
+
+package com.theaigames.game.warlight2.bots;
+
+import com.theaigames.game.warlight2.GameState;
+import com.theaigames.game.warlight2.map.Adjacency;
+
+/**
+ * BonusPolicy class
+ *
+ * Goes for SuperRegion bonuses: the value of a region is the reward of its SuperRegions divided
+ * by the number of regions the player still has to take to complete them, so small, rewarding
+ * SuperRegions which are nearly complete are finished first. Starts in the SuperRegions with the
+ * highest reward per region.
+ */
+
+public class BonusPolicy extends TargetingPolicy
+{
+    private static final double BASE_VALUE = 0.1;  // value of regions which do not bring a bonus closer
+
+    @Override
+    protected double[] getRegionValues(GameState state, int player) {
+        Adjacency adjacency = state.getAdjacency();
+        double[] values = new double[adjacency.getMaxRegionID() + 1];
+        for (int regionID = 0; regionID < values.length; regionID++) {
+            if (adjacency.hasRegion(regionID) && state.getOwner(regionID) != player) {
+                values[regionID] = BASE_VALUE;
+            }
+        }
+
+        for (int superRegion = 0; superRegion < state.getNumSuperRegions(); superRegion++) {
+            int[] regionIDs = state.getSuperRegionRegions(superRegion);
+            int missing = 0;
+            for (int regionID : regionIDs) {
+                if (state.getOwner(regionID) != player) {
+                    missing++;
+                }
+            }
+            if (missing == 0) {
+                continue;
+            }
+            double value = (double) state.getSuperRegionReward(superRegion) / missing;
+            for (int regionID : regionIDs) {
+                if (state.getOwner(regionID) != player) {
+                    values[regionID] += value;
+                }
+            }
+        }
+        return values;
+    }
+}
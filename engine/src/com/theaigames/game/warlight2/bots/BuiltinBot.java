@@ -0,0 +1,57 @@
+// Copyright 2015 theaigames.com (developers@theaigames.com)
+
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+
+//        http://www.apache.org/licenses/LICENSE-2.0
+
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+//    For the full copyright and license information, please view the LICENSE
+//    file that was distributed with this source code.
+
+
+package com.theaigames.game.warlight2.bots;
+
+import com.theaigames.game.warlight2.GameState;
+import com.theaigames.game.warlight2.SplitMix64;
+
+/**
+ * BuiltinBot interface
+ *
+ * A bot running inside the engine: it chooses its starting regions and its moves directly
+ * from a GameState, without a bot process and without the text protocol. The Processor gives
+ * it a view of the state which hides what the player can not see (see Processor).
+ */
+
+public interface BuiltinBot extends Policy
+{
+    /**
+     * @param state           : the map before any region is picked (all regions are neutral)
+     * @param pickableRegions : the IDs of the regions which can be picked
+     * @return : (some of) the pickable regions, in the order the player prefers them
+     */
+    int[] getStartingPicks(GameState state, int player, int[] pickableRegions, SplitMix64 rnd);
+
+    /**
+     * @param name : "random", "greedy" or "bonus"
+     * @return : a new built-in bot of the given kind
+     */
+    static BuiltinBot forName(String name) {
+        switch (name) {
+        case "random":
+            return new RandomPolicy();
+        case "greedy":
+            return new GreedyExpansionPolicy();
+        case "bonus":
+            return new BonusPolicy();
+        default:
+            throw new IllegalArgumentException("Unknown built-in bot: " + name);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+// Copyright 2015 theaigames.com (developers@theaigames.com)
+
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+
+//        http://www.apache.org/licenses/LICENSE-2.0
+
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+//    For the full copyright and license information, please view the LICENSE
+//    file that was distributed with this source code.
+
+
+package com.theaigames.game.warlight2.bots;
+
+import com.theaigames.game.warlight2.GameState;
+import com.theaigames.game.warlight2.map.Adjacency;
+
+/**
+ * GreedyExpansionPolicy class
+ *
+ * Takes as many regions as possible, cheapest first, preferring regions with many neighbours
+ * (which open up more regions to take). Starts on the pickable regions with the most neighbours.
+ */
+
+public class GreedyExpansionPolicy extends TargetingPolicy
+{
+    @Override
+    protected double[] getRegionValues(GameState state, int player) {
+        Adjacency adjacency = state.getAdjacency();
+        double[] values = new double[adjacency.getMaxRegionID() + 1];
+        for (int regionID = 0; regionID < values.length; regionID++) {
+            if (adjacency.hasRegion(regionID) && state.getOwner(regionID) != player) {
+                values[regionID] = 1 + 0.01 * adjacency.getNeighbors(regionID).length;
+            }
+        }
+        return values;
+    }
+}
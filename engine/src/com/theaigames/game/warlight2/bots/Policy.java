@@ -0,0 +1,44 @@
+// Copyright 2015 theaigames.com (developers@theaigames.com)
+
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+
+//        http://www.apache.org/licenses/LICENSE-2.0
+
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+//    For the full copyright and license information, please view the LICENSE
+//    file that was distributed with this source code.
+
+
+package com.theaigames.game.warlight2.bots;
+
+import com.theaigames.game.warlight2.GameState;
+import com.theaigames.game.warlight2.SplitMix64;
+import com.theaigames.game.warlight2.move.MoveBuffer;
+
+/**
+ * Policy interface
+ *
+ * Chooses the moves of a player for a round directly from a GameState, without a bot process,
+ * e.g. for playing out positions in simulations. Policies see the full state (no fog).
+ *
+ * Implementations must not keep state between calls, so a single instance can be used by
+ * many threads at the same time.
+ */
+
+public interface Policy
+{
+    /**
+     * Adds the deployments and attacks/transfers of the player for the next round to the
+     * given buffer (which may already hold moves of other players)
+     *
+     * @param rnd : the only source of randomness the policy may use, so that play-outs are reproducible
+     */
+    void getMoves(GameState state, int player, SplitMix64 rnd, MoveBuffer moves);
+}
@@ -0,0 +1,84 @@
+// Copyright 2015 theaigames.com (developers@theaigames.com)
+
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+
+//        http://www.apache.org/licenses/LICENSE-2.0
+
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+//    For the full copyright and license information, please view the LICENSE
+//    file that was distributed with this source code.
+
+
+package com.theaigames.game.warlight2.bots;
+
+import com.theaigames.game.warlight2.GameState;
+import com.theaigames.game.warlight2.SplitMix64;
+import com.theaigames.game.warlight2.map.Adjacency;
+import com.theaigames.game.warlight2.move.MoveBuffer;
+
+/**
+ * RandomPolicy class
+ *
+ * Picks random starting regions, deploys its armies on random own regions, and moves a random
+ * part of the armies of each region to a random neighbour (or keeps them).
+ */
+
+public class RandomPolicy implements BuiltinBot
+{
+    @Override
+    public int[] getStartingPicks(GameState state, int player, int[] pickableRegions, SplitMix64 rnd) {
+        int[] picks = pickableRegions.clone();
+        for (int i = picks.length - 1; i > 0; i--) {
+            int j = rnd.nextInt(i + 1);
+            int pick = picks[i];
+            picks[i] = picks[j];
+            picks[j] = pick;
+        }
+        return picks;
+    }
+
+    @Override
+    public void getMoves(GameState state, int player, SplitMix64 rnd, MoveBuffer moves) {
+        int numRegions = state.getNumRegions(player);
+        if (numRegions == 0) {
+            return;
+        }
+        Adjacency adjacency = state.getAdjacency();
+
+        int armiesLeft = state.getIncome(player);
+        while (armiesLeft > 0) {
+            int armies = 1 + rnd.nextInt(armiesLeft);
+            moves.addPlaceArmies(player, getOwnedRegion(state, player, rnd.nextInt(numRegions)), armies);
+            armiesLeft -= armies;
+        }
+
+        for (int regionID = 0; regionID <= adjacency.getMaxRegionID(); regionID++) {
+            if (state.getOwner(regionID) != player || state.getArmies(regionID) < 2) {
+                continue;
+            }
+            int[] neighbors = adjacency.getNeighbors(regionID);
+            int target = rnd.nextInt(neighbors.length + 1);
+            if (target < neighbors.length) {  // the last choice is doing nothing
+                moves.addAttackTransfer(player, regionID, neighbors[target], 1 + rnd.nextInt(state.getArmies(regionID) - 1));
+            }
+        }
+    }
+
+    /**
+     * @return : the ID of the n-th region (counting from 0 in order of ID) owned by the player
+     */
+    static int getOwnedRegion(GameState state, int player, int n) {
+        for (int regionID = 0; ; regionID++) {
+            if (state.getOwner(regionID) == player && n-- == 0) {
+                return regionID;
+            }
+        }
+    }
+}
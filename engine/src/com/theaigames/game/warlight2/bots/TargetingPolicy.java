@@ -0,0 +1,191 @@
+// Copyright 2015 theaigames.com (developers@theaigames.com)
+
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+
+//        http://www.apache.org/licenses/LICENSE-2.0
+
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+//    For the full copyright and license information, please view the LICENSE
+//    file that was distributed with this source code.
+
+
+package com.theaigames.game.warlight2.bots;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import com.theaigames.game.warlight2.GameState;
+import com.theaigames.game.warlight2.SplitMix64;
+import com.theaigames.game.warlight2.map.Adjacency;
+import com.theaigames.game.warlight2.move.MoveBuffer;
+
+/**
+ * TargetingPolicy class
+ *
+ * Base class for simple bots which rank the regions they do not own by value. Each round all
+ * armies are deployed next to the target which is cheapest to take for its value, every region
+ * on the border attacks its neighbours in the same order as long as it has enough armies for a
+ * likely win, and armies in the interior are moved towards the nearest border.
+ */
+
+public abstract class TargetingPolicy implements BuiltinBot
+{
+    /**
+     * @return : region ID -> how much the player wants to own the region, larger than 0 for all
+     *           regions the player does not own (used for starting picks as well as attacks)
+     */
+    protected abstract double[] getRegionValues(GameState state, int player);
+
+    @Override
+    public int[] getStartingPicks(GameState state, int player, int[] pickableRegions, SplitMix64 rnd) {
+        double[] values = getRegionValues(state, player);
+        return Arrays.stream(pickableRegions).boxed()
+                .sorted(Comparator.comparingDouble(regionID -> -values[regionID]))
+                .mapToInt(Integer::intValue).toArray();
+    }
+
+    @Override
+    public void getMoves(GameState state, int player, SplitMix64 rnd, MoveBuffer moves) {
+        int numRegions = state.getNumRegions(player);
+        if (numRegions == 0) {
+            return;
+        }
+        Adjacency adjacency = state.getAdjacency();
+        double[] values = getRegionValues(state, player);
+        double killRatio = state.getSettings().getOffensiveKillRatio();
+
+        // deploy on the region from which the best target can be taken with the fewest extra armies
+        int deployRegion = -1;
+        double bestPriority = 0;
+        for (int regionID = 0; regionID <= adjacency.getMaxRegionID(); regionID++) {
+            if (state.getOwner(regionID) != player) {
+                continue;
+            }
+            for (int target : adjacency.getNeighbors(regionID)) {
+                if (state.getOwner(target) != player) {
+                    int missing = getArmiesNeeded(state.getArmies(target), killRatio) - (state.getArmies(regionID) - 1);
+                    double priority = values[target] / Math.max(1, missing);
+                    if (priority > bestPriority) {
+                        bestPriority = priority;
+                        deployRegion = regionID;
+                    }
+                }
+            }
+        }
+        if (deployRegion < 0) {  // nothing left to attack
+            deployRegion = RandomPolicy.getOwnedRegion(state, player, rnd.nextInt(numRegions));
+        }
+        int income = state.getIncome(player);
+        if (income > 0) {
+            moves.addPlaceArmies(player, deployRegion, income);
+        }
+
+        int[] distances = getDistancesToBorder(state, player);
+        for (int regionID = 0; regionID <= adjacency.getMaxRegionID(); regionID++) {
+            if (state.getOwner(regionID) != player) {
+                continue;
+            }
+            int available = state.getArmies(regionID) + ((regionID == deployRegion) ? income : 0) - 1;
+            if (available <= 0 || distances[regionID] == Integer.MAX_VALUE) {
+                continue;
+            }
+
+            if (distances[regionID] > 0) {  // interior region: move towards the border
+                for (int neighbor : adjacency.getNeighbors(regionID)) {
+                    if (distances[neighbor] < distances[regionID]) {
+                        moves.addAttackTransfer(player, regionID, neighbor, available);
+                        break;
+                    }
+                }
+                continue;
+            }
+
+            // attack the neighbours by priority while there are enough armies, the remaining armies
+            // join the first attack
+            int firstAttack = -1;
+            int target;
+            while ((target = getNextTarget(state, player, regionID, available, values, killRatio, moves, firstAttack)) >= 0) {
+                int armies = getArmiesNeeded(state.getArmies(target), killRatio);
+                int move = moves.addAttackTransfer(player, regionID, target, armies);
+                if (firstAttack < 0) {
+                    firstAttack = move;
+                }
+                available -= armies;
+            }
+            if (firstAttack >= 0 && available > 0) {
+                moves.setArmies(firstAttack, moves.getArmies(firstAttack) + available);
+            }
+        }
+    }
+
+    /**
+     * @return : the neighbour of the region with the highest value which is not attacked yet (i.e. has no
+     *           move from the region after firstAttack) and can be taken with the available armies, or -1
+     */
+    private int getNextTarget(GameState state, int player, int regionID, int available, double[] values,
+            double killRatio, MoveBuffer moves, int firstAttack) {
+        int best = -1;
+        for (int target : state.getAdjacency().getNeighbors(regionID)) {
+            if (state.getOwner(target) == player || getArmiesNeeded(state.getArmies(target), killRatio) > available
+                    || (best >= 0 && values[target] <= values[best])) {
+                continue;
+            }
+            boolean attacked = false;
+            for (int move = firstAttack; move >= 0 && move < moves.size(); move++) {
+                attacked |= (moves.getToRegion(move) == target);
+            }
+            if (!attacked) {
+                best = target;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return : the number of attacking armies which (without luck) destroy all defenders
+     */
+    protected static int getArmiesNeeded(int defendingArmies, double offensiveKillRatio) {
+        return Math.max(1, (int) Math.ceil(defendingArmies / offensiveKillRatio));
+    }
+
+    /**
+     * @return : region ID -> the number of steps from the region to the nearest region of the player
+     *           bordering a region of someone else, through regions of the player (0 for border regions,
+     *           Integer.MAX_VALUE for regions not owned by the player or not connected to a border)
+     */
+    protected static int[] getDistancesToBorder(GameState state, int player) {
+        Adjacency adjacency = state.getAdjacency();
+        int[] distances = new int[adjacency.getMaxRegionID() + 1];
+        int[] queue = new int[distances.length];
+        int queueEnd = 0;
+        Arrays.fill(distances, Integer.MAX_VALUE);
+        for (int regionID = 0; regionID < distances.length; regionID++) {
+            if (state.getOwner(regionID) == player) {
+                for (int neighbor : adjacency.getNeighbors(regionID)) {
+                    if (state.getOwner(neighbor) != player) {
+                        distances[regionID] = 0;
+                        queue[queueEnd++] = regionID;
+                        break;
+                    }
+                }
+            }
+        }
+        for (int queueStart = 0; queueStart < queueEnd; queueStart++) {
+            int regionID = queue[queueStart];
+            for (int neighbor : adjacency.getNeighbors(regionID)) {
+                if (state.getOwner(neighbor) == player && distances[neighbor] == Integer.MAX_VALUE) {
+                    distances[neighbor] = distances[regionID] + 1;
+                    queue[queueEnd++] = neighbor;
+                }
+            }
+        }
+        return distances;
+    }
+}
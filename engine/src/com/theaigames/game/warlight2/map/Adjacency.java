@@ -0,0 +1,193 @@
+// Copyright 2015 theaigames.com (developers@theaigames.com)
+
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+
+//        http://www.apache.org/licenses/LICENSE-2.0
+
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+//    For the full copyright and license information, please view the LICENSE
+//    file that was distributed with this source code.
+
+package com.theaigames.game.warlight2.map;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Adjacency class
+ *
+ * An immutable, primitive representation of the region graph of a map, used for fast neighbour
+ * tests. Neighbours of each region are kept as a sorted int array (which also gives every
+ * directed edge an index), and for small or dense maps also as a bit matrix, so that a neighbour
+ * test is a single bit lookup instead of a binary search.
+ *
+ * Instances only depend on the topology of a map, so they are shared by all maps (and all games)
+ * with the same regions and neighbours, see forMap(). An instance is kept only as long as some map
+ * still uses it, so a long-running process does not hold on to every topology it has seen.
+ */
+public class Adjacency
+{
+    // use a bit matrix if it takes at most this many bytes...
+    private static final long MAX_BIT_MATRIX_SIZE = 64 * 1024;
+    // ...or if it takes at most this many times the memory of the sorted neighbour arrays
+    private static final int MAX_BIT_MATRIX_OVERHEAD = 4;
+
+    private static final ConcurrentMap<Topology, Adjacency> cache =
+            CacheBuilder.newBuilder().weakValues().<Topology, Adjacency>build().asMap();
+
+    private final int[][] sortedNeighbors;  // region ID -> sorted IDs of neighbours, null if there is no such region
+    private final int[] firstEdge;          // region ID -> index of the first edge leaving the region
+    private final int numEdges;
+    private final long[] bitMatrix;         // bit (from * rowWords * 64 + to) is set for every edge; null for large maps
+    private final int rowWords;
+
+    private Adjacency(int[][] sortedNeighbors) {
+        this(sortedNeighbors, null);
+    }
+
+    /**
+     * @param sortedNeighbors : region ID -> sorted IDs of neighbours, null if there is no such region (not copied)
+     * @param useBitMatrix    : true or false to force the kind of neighbour test (e.g. to compare them),
+     *                          null to choose it from the size and density of the map
+     */
+    Adjacency(int[][] sortedNeighbors, Boolean useBitMatrix) {
+        this.sortedNeighbors = sortedNeighbors;
+        this.firstEdge = new int[sortedNeighbors.length];
+
+        int edges = 0;
+        for (int regionID = 0; regionID < sortedNeighbors.length; regionID++) {
+            this.firstEdge[regionID] = edges;
+            if (sortedNeighbors[regionID] != null) {
+                edges += sortedNeighbors[regionID].length;
+            }
+        }
+        this.numEdges = edges;
+
+        this.rowWords = (sortedNeighbors.length + 63) / 64;
+        long bitMatrixSize = (long) sortedNeighbors.length * this.rowWords * Long.BYTES;
+        if ((useBitMatrix != null) ? useBitMatrix : (bitMatrixSize <= MAX_BIT_MATRIX_SIZE
+                || bitMatrixSize <= (long) MAX_BIT_MATRIX_OVERHEAD * this.numEdges * Integer.BYTES)) {
+            this.bitMatrix = new long[sortedNeighbors.length * this.rowWords];
+            for (int from = 0; from < sortedNeighbors.length; from++) {
+                if (sortedNeighbors[from] != null) {
+                    for (int to : sortedNeighbors[from]) {
+                        this.bitMatrix[from * this.rowWords + (to >>> 6)] |= 1L << to;
+                    }
+                }
+            }
+        } else {
+            this.bitMatrix = null;
+        }
+    }
+
+    /**
+     * @return : the adjacency of the given map; built only once for every distinct topology
+     */
+    public static Adjacency forMap(Map map) {
+        int maxRegionID = 0;
+        for (Integer regionID : map.getRegionIDs()) {
+            maxRegionID = Math.max(maxRegionID, regionID);
+        }
+
+        int[][] sortedNeighbors = new int[maxRegionID + 1][];
+        for (Region region : map.getRegions()) {
+            sortedNeighbors[region.getId()] = region.getNeighbors().stream()
+                    .mapToInt(Integer::intValue).sorted().toArray();
+        }
+        return cache.computeIfAbsent(new Topology(sortedNeighbors), topology -> new Adjacency(topology.sortedNeighbors));
+    }
+
+    /**
+     * @return : true if there is an edge from the first to the second region. Region IDs which
+     *           are not on the map have no neighbours
+     */
+    public boolean isNeighbor(int fromRegionID, int toRegionID) {
+        if (fromRegionID < 0 || fromRegionID >= this.sortedNeighbors.length
+                || toRegionID < 0 || toRegionID >= this.sortedNeighbors.length) {
+            return false;
+        }
+        if (this.bitMatrix != null) {
+            return (this.bitMatrix[fromRegionID * this.rowWords + (toRegionID >>> 6)] & (1L << toRegionID)) != 0;
+        }
+        return getEdgeIndex(fromRegionID, toRegionID) >= 0;
+    }
+
+    /**
+     * @return : an index in [0, getNumEdges()) unique for the edge between the given regions,
+     *           or -1 if the regions are not neighbours
+     */
+    public int getEdgeIndex(int fromRegionID, int toRegionID) {
+        if (fromRegionID < 0 || fromRegionID >= this.sortedNeighbors.length
+                || this.sortedNeighbors[fromRegionID] == null) {
+            return -1;
+        }
+        int neighborIndex = Arrays.binarySearch(this.sortedNeighbors[fromRegionID], toRegionID);
+        return (neighborIndex < 0) ? -1 : this.firstEdge[fromRegionID] + neighborIndex;
+    }
+
+    /**
+     * @return : true if the map has a region with the given ID
+     */
+    public boolean hasRegion(int regionID) {
+        return regionID >= 0 && regionID < this.sortedNeighbors.length && this.sortedNeighbors[regionID] != null;
+    }
+
+    /**
+     * @return : the sorted IDs of the neighbours of the given region (note: the array is shared, it must not be modified)
+     */
+    public int[] getNeighbors(int regionID) {
+        return this.sortedNeighbors[regionID];
+    }
+
+    /**
+     * @return : the number of (directed) edges
+     */
+    public int getNumEdges() {
+        return this.numEdges;
+    }
+
+    /**
+     * @return : the highest region ID on the map
+     */
+    public int getMaxRegionID() {
+        return this.sortedNeighbors.length - 1;
+    }
+
+    /**
+     * @return : true if neighbour tests use a bit matrix, false if they use binary search
+     */
+    public boolean usesBitMatrix() {
+        return this.bitMatrix != null;
+    }
+
+    // key of the cache: maps are equal if they have the same regions with the same neighbours
+    private static class Topology
+    {
+        private final int[][] sortedNeighbors;
+        private final int hash;
+
+        Topology(int[][] sortedNeighbors) {
+            this.sortedNeighbors = sortedNeighbors;
+            this.hash = Arrays.deepHashCode(sortedNeighbors);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Topology && Arrays.deepEquals(this.sortedNeighbors, ((Topology) other).sortedNeighbors);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+    }
+}
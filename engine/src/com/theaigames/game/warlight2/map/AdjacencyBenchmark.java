@@ -0,0 +1,166 @@
+// Copyright 2015 theaigames.com (developers@theaigames.com)
+
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+
+//        http://www.apache.org/licenses/LICENSE-2.0
+
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+//    For the full copyright and license information, please view the LICENSE
+//    file that was distributed with this source code.
+
+package com.theaigames.game.warlight2.map;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntSupplier;
+
+import com.theaigames.game.warlight2.SplitMix64;
+
+/**
+ * AdjacencyBenchmark class
+ *
+ * Times neighbour tests on a small dense map and on a large sparse map, each with the bit matrix and
+ * with the binary search of Adjacency (whichever Adjacency would choose for the map), and with the
+ * HashSet<Integer> of neighbours which Region used before. Half of the tested pairs are neighbours.
+ *
+ * Usage: AdjacencyBenchmark [seed]
+ */
+
+public class AdjacencyBenchmark
+{
+    private static final int NUM_TESTS = 1 << 16;    // region pairs tested in a pass
+    private static final int PASSES = 64;            // passes per measurement
+    private static final int MEASUREMENTS = 10;      // the fastest measurement is reported
+
+    public static void main(String args[]) {
+        SplitMix64 rnd = new SplitMix64((args.length > 0) ? Long.parseLong(args[0]) : 1);
+
+        System.out.println("map            regions   edges   ns/test: hash set  binary search  bit matrix");
+        run("small dense", createRandomMap(42, 0.3, rnd), rnd);
+        run("large sparse", createGridMap(100, 100), rnd);
+    }
+
+    private static void run(String name, List<Set<Integer>> neighborSets, SplitMix64 rnd) {
+        int[][] sortedNeighbors = new int[neighborSets.size()][];
+        for (int regionID = 0; regionID < sortedNeighbors.length; regionID++) {
+            if (neighborSets.get(regionID) != null) {
+                sortedNeighbors[regionID] = neighborSets.get(regionID).stream()
+                        .mapToInt(Integer::intValue).sorted().toArray();
+            }
+        }
+        Adjacency binarySearch = new Adjacency(sortedNeighbors, false);
+        Adjacency bitMatrix = new Adjacency(sortedNeighbors, true);
+
+        // half of the pairs are neighbours, the other half random regions (nearly never neighbours)
+        int[] from = new int[NUM_TESTS];
+        int[] to = new int[NUM_TESTS];
+        for (int i = 0; i < NUM_TESTS; i++) {
+            do {
+                from[i] = rnd.nextInt(sortedNeighbors.length);
+            } while (sortedNeighbors[from[i]] == null || sortedNeighbors[from[i]].length == 0);
+            if (i % 2 == 0) {
+                to[i] = sortedNeighbors[from[i]][rnd.nextInt(sortedNeighbors[from[i]].length)];
+            } else {
+                to[i] = 1 + rnd.nextInt(sortedNeighbors.length - 1);
+            }
+        }
+
+        int expected = countNeighbors(neighborSets, from, to);
+        double hashSetTime = measure(() -> countNeighbors(neighborSets, from, to), expected);
+        double binarySearchTime = measure(() -> countNeighbors(binarySearch, from, to), expected);
+        double bitMatrixTime = measure(() -> countNeighbors(bitMatrix, from, to), expected);
+
+        System.out.format("%-12s %9d %7d %18.2f %14.2f %11.2f\n", name, sortedNeighbors.length - 1,
+                bitMatrix.getNumEdges(), hashSetTime, binarySearchTime, bitMatrixTime);
+    }
+
+    /**
+     * @return : the time of a single test in ns, in the fastest of the measurements
+     */
+    private static double measure(IntSupplier pass, int expected) {
+        long bestTime = Long.MAX_VALUE;
+        for (int measurement = 0; measurement < MEASUREMENTS; measurement++) {
+            long timeStart = System.nanoTime();
+            for (int i = 0; i < PASSES; i++) {
+                if (pass.getAsInt() != expected) {
+                    throw new IllegalStateException("Neighbour tests disagree");
+                }
+            }
+            bestTime = Math.min(bestTime, System.nanoTime() - timeStart);
+        }
+        return (double) bestTime / ((long) PASSES * NUM_TESTS);
+    }
+
+    private static int countNeighbors(List<Set<Integer>> neighborSets, int[] from, int[] to) {
+        int count = 0;
+        for (int i = 0; i < from.length; i++) {
+            if (neighborSets.get(from[i]).contains(to[i])) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static int countNeighbors(Adjacency adjacency, int[] from, int[] to) {
+        int count = 0;
+        for (int i = 0; i < from.length; i++) {
+            if (adjacency.isNeighbor(from[i], to[i])) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return : region ID -> neighbours (null for ID 0) of a map on which every pair of regions
+     *           is connected with the given probability
+     */
+    private static List<Set<Integer>> createRandomMap(int numRegions, double density, SplitMix64 rnd) {
+        List<Set<Integer>> neighborSets = createRegions(numRegions);
+        for (int a = 1; a <= numRegions; a++) {
+            for (int b = a + 1; b <= numRegions; b++) {
+                if (rnd.nextDouble() < density) {
+                    neighborSets.get(a).add(b);
+                    neighborSets.get(b).add(a);
+                }
+            }
+        }
+        return neighborSets;
+    }
+
+    /**
+     * @return : region ID -> neighbours (null for ID 0) of a map on which the regions form a grid,
+     *           each connected to the regions left, right, above and below it
+     */
+    private static List<Set<Integer>> createGridMap(int width, int height) {
+        List<Set<Integer>> neighborSets = createRegions(width * height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                Set<Integer> neighbors = neighborSets.get(y * width + x + 1);
+                if (x > 0) neighbors.add(y * width + x);
+                if (x < width - 1) neighbors.add(y * width + x + 2);
+                if (y > 0) neighbors.add((y - 1) * width + x + 1);
+                if (y < height - 1) neighbors.add((y + 1) * width + x + 1);
+            }
+        }
+        return neighborSets;
+    }
+
+    private static List<Set<Integer>> createRegions(int numRegions) {
+        List<Set<Integer>> neighborSets = new ArrayList<>();
+        neighborSets.add(null);  // region IDs start at 1
+        for (int regionID = 1; regionID <= numRegions; regionID++) {
+            neighborSets.add(new HashSet<>());
+        }
+        return neighborSets;
+    }
+}
@@ -22,8 +22,6 @@ import java.util.HashMap;
 import java.util.Set;
 import java.util.HashSet;
 
-import com.theaigames.game.warlight2.Player;
-
 /**
  * Map class
  *
@@ -36,9 +34,15 @@ public class Map
     private HashMap<Integer, SuperRegion> bonuses;
 
     private HashMap<Integer, Set<Integer>> regionBonusesCache;
+    private Adjacency adjacency;
 
     // used for clone() only
     protected Map(String name, HashMap<Integer, Region> regions, HashMap<Integer, SuperRegion> bonuses) {
+        this(name, regions, bonuses, null);
+    }
+
+    private Map(String name, HashMap<Integer, Region> regions, HashMap<Integer, SuperRegion> bonuses,
+            Adjacency adjacency) {
         this.name = name;
         this.regions = regions;
         this.bonuses = bonuses;
@@ -48,6 +52,10 @@ public class Map
 
         // update back-references from a region to all bonuses the region is part of
         updateRegionBonusCache();
+
+        // clones share the adjacency of the original map, other maps look it up by topology
+        this.adjacency = (adjacency != null) ? adjacency : Adjacency.forMap(this);
+        regions.forEach((regionID, region) -> region.setAdjacency(this.adjacency));
     }
 
     public String getName() {
@@ -67,48 +75,14 @@ public class Map
         HashMap<Integer, SuperRegion> bonusesCopy = new HashMap<>();
         bonuses.forEach((bonusID, bonus) -> bonusesCopy.put(bonusID, bonus.clone()));
 
-        return new Map(this.getName(), regionsCopy, bonusesCopy);
+        return new Map(this.getName(), regionsCopy, bonusesCopy, this.adjacency);
     }
 
     /**
-     * @param player
-     * @return : a copy of the map as visible by a given player
+     * @return : the region graph of this map, for fast neighbour tests
      */
-    public Map getVisibleMapCopyForPlayer(Player player, Settings settings) {
-        Map visibleMap = this.clone();
-
-        // first determine which regions are visible and in which way (owner, armies, both, none)
-        if (settings.getFogLevel() != Settings.FogLevel.NO_FOG) {
-            final Set<Integer> visibleArmiesRegions;
-            final Set<Integer> visibleOwnersRegions; // note: should always a superset of visibleArmiesRegions
-            switch(settings.getFogLevel()) {
-            case EXTREME_FOG:
-                visibleArmiesRegions = ownedRegionsByPlayer(player);    // only see armies for own territories
-                visibleOwnersRegions = visibleArmiesRegions;            // only see owner for own territories
-                break;
-            case HEAVY_FOG:
-                visibleArmiesRegions = ownedRegionsByPlayer(player);    // only see armies for own territories
-                visibleOwnersRegions = visibleRegionsForPlayer(player); // see owners for all neighbours
-                break;
-            case LIGHT_FOG:
-                visibleArmiesRegions = visibleRegionsForPlayer(player); // see armies for own and neighbours
-                visibleOwnersRegions = getRegionIDs();                  // see owner for all regions
-                break;
-            case NORMAL_FOG:
-            default:  // default to NORMAL_FOG for all unsupported fogs
-                visibleArmiesRegions = visibleRegionsForPlayer(player); // see armies for own and neighbours
-                visibleOwnersRegions = visibleArmiesRegions;            // see owner for own and neighbours
-            }
-
-            // apply fog, as needed
-            visibleMap.regions.forEach((regionID, region) -> {
-                if (!visibleArmiesRegions.contains(regionID)) {
-                    region.markAsFogged(visibleOwnersRegions.contains(regionID));
-                }
-            });
-        }
-
-        return visibleMap;
+    public Adjacency getAdjacency() {
+        return this.adjacency;
     }
 
     /**
@@ -179,38 +153,6 @@ public class Map
         return bonus;
     }
 
-    /**
-     * @param player
-     * @return : a list of all region IDs owned by given player
-     */
-    public Set<Integer> ownedRegionsByPlayer(Player player) {
-        Set<Integer> ownedRegionIDs = new HashSet<>();
-
-        for (Region region : this.getRegions())
-            if (region.getOwnerName().equals(player.getName()))
-                ownedRegionIDs.add(region.getId());
-
-        return ownedRegionIDs;
-    }
-
-    /**
-     * Needed because fog of war
-     *
-     * @param player
-     * @return : a list of all visible regions for given player
-     */
-    public Set<Integer> visibleRegionsForPlayer(Player player) {
-        Set<Integer> ownedRegionIDs = ownedRegionsByPlayer(player);
-        Set<Integer> visibleRegionIDs = new HashSet<>(ownedRegionIDs);
-
-        for (Integer regionID : ownedRegionIDs) {
-            for (Integer neighborID : this.getRegion(regionID).getNeighbors()) {
-                visibleRegionIDs.add(neighborID);  // since this is a set nothing happens if neighbour already in the set
-            }
-        }
-        return visibleRegionIDs;
-    }
-
     public Collection<Integer> getRegionBonuses(Region region) {
         return regionBonusesCache.get(region.getId());
     }
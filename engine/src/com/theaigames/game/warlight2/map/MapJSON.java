@@ -89,6 +89,31 @@ public final class MapJSON
         return standing;
     }
 
+    public static JSONArray getStandingsJSON(VisibleMapView visibleMap) {
+        JSONArray standing = new JSONArray();
+        visibleMap.getMap().getRegions().forEach(region -> standing.put(MapJSON.getStandingsJSON(region, visibleMap)));
+        return standing;
+    }
+
+    // sets the owners and armies of the regions of the map to the ones in the standing JSON,
+    // e.g. to set up a position; all armies must be known (no fogged regions)
+    public static void applyStandings(Map map, JSONArray standing) {
+        for (int i = 0; i < standing.length(); i++) {
+            JSONObject regionJSON = standing.getJSONObject(i);
+            int id = regionJSON.getInt("terrID");
+            Region region = map.getRegion(id);
+            if (region == null) {
+                throw new IllegalArgumentException("The standing contains region " + id + " which is not on the map");
+            }
+            int armies = regionJSON.getInt("armies");
+            if (armies < 0) {
+                throw new IllegalArgumentException("The armies on region " + id + " are not known");
+            }
+            region.setPlayerName(regionJSON.getString("ownedBy"));
+            region.setArmies(armies);
+        }
+    }
+
     //-------------------------------------------------------------------
 
     // Region JSON (compatible with WarZone map JSONs):
@@ -136,6 +161,16 @@ public final class MapJSON
         return result;
     }
 
+    // same as above, for a region as seen through a fogged view of the map
+    private static JSONObject getStandingsJSON(Region region, VisibleMapView visibleMap) {
+        JSONObject result = new JSONObject();
+        result.put("terrID", region.getId());
+        result.put("armies", visibleMap.getArmies(region));
+        result.put("ownedBy", visibleMap.getOwnerName(region));
+        result.put("fogLevel", visibleMap.isFogged(region) ? "Fog" : "Visible");
+        return result;
+    }
+
     //-------------------------------------------------------------------
 
     // SuperRegion JSON (compatible with WarZone map JSONs):
@@ -34,6 +34,7 @@ public class Region implements Comparable<Region>
     private final int id;
     private final String name;
     private final Set<Integer> neighbors;
+    private Adjacency adjacency;  // set by the map the region is part of
 
     private int armies;
     private String ownerName;
@@ -62,9 +63,16 @@ public class Region implements Comparable<Region>
     }
 
     public boolean isNeighbor(int regionID) {
-        if (neighbors.contains(regionID))
-            return true;
-        return false;
+        if (adjacency != null)
+            return adjacency.isNeighbor(this.id, regionID);
+        return neighbors.contains(regionID);
+    }
+
+    /**
+     * @param adjacency : the region graph of the map this region is part of
+     */
+    protected void setAdjacency(Adjacency adjacency) {
+        this.adjacency = adjacency;
     }
 
     /**
@@ -27,7 +27,9 @@ public class Settings
         "'MoveOrder'                       : 'Cycle',         " +
         "'Fog'                             : 'Foggy',         " +
         "'FirstPlayer'                     : '1',             " +   // custom: "random", "1" or "2" - which player gets first pick (and moves second on turn1)
-        "'RoundsUntilDraw'                 : 60               " +   // custom: 0 == use own heuristic based on map size
+        "'RoundsUntilDraw'                 : 60,              " +   // custom: 0 == use own heuristic based on map size
+        "'EndOnElimination'                : false            " +   // custom: end the game as soon as a player is eliminated,
+                                                                      //         without executing the remaining moves of the round
         "}";
 
     private static final JSONObject DEFAULT_SETTINGS_JSON = new JSONObject(DEFAULT_SETTINGS_JSON_STRING.replaceAll("'", "\""));
@@ -143,6 +145,10 @@ public class Settings
         return (first == null) ? FirstPlayer.PLAYER_1 : first;
     }
 
+    public boolean getEndOnElimination() {
+        return settingsJSON.getBoolean("EndOnElimination");
+    }
+
     public int getNumberOfStartingTerritories() {
         return settingsJSON.getInt("TerritoryLimit");
     }
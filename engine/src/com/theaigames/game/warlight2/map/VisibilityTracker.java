@@ -0,0 +1,106 @@
+package com.theaigames.game.warlight2.map;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Keeps track of which regions are visible for which player (own regions and their neighbours),
+ * updating the visibility incrementally when a region changes owner.
+ *
+ * For each player and region the number of player-owned regions among the region itself and its
+ * neighbours is stored; a region is visible when that number is positive. Changing the owner of
+ * a region thus costs O(number of neighbours), and a visibility check is a single array lookup.
+ * The sets of owned and visible regions of each player are kept up to date along with the counts,
+ * so a VisibleMapView can use them without scanning the map.
+ *
+ * Players are identified by their index, owners outside [0, numPlayers) (e.g. neutral) are ignored.
+ *
+ * Note: the tracker is only aware of ownership changes reported via ownerChanged(), after any
+ *       other change recompute() has to be called.
+ */
+public class VisibilityTracker
+{
+    private final Adjacency adjacency;
+    private final int[][] ownedNearbyCount; // player index -> region ID -> number of owned regions nearby
+    private final BitSet[] ownedRegions;    // player index -> IDs of the regions owned by the player
+    private final BitSet[] visibleRegions;  // player index -> IDs of the regions with a positive count
+
+    public VisibilityTracker(Adjacency adjacency, int numPlayers) {
+        this.adjacency = adjacency;
+        this.ownedNearbyCount = new int[numPlayers][adjacency.getMaxRegionID() + 1];
+        this.ownedRegions = new BitSet[numPlayers];
+        this.visibleRegions = new BitSet[numPlayers];
+        for (int player = 0; player < numPlayers; player++) {
+            this.ownedRegions[player] = new BitSet(adjacency.getMaxRegionID() + 1);
+            this.visibleRegions[player] = new BitSet(adjacency.getMaxRegionID() + 1);
+        }
+    }
+
+    /**
+     * Recomputes visibility from scratch
+     *
+     * @param owners : region ID -> index of the player owning the region
+     */
+    public void recompute(int[] owners) {
+        for (int player = 0; player < this.ownedNearbyCount.length; player++) {
+            Arrays.fill(this.ownedNearbyCount[player], 0);
+            this.ownedRegions[player].clear();
+            this.visibleRegions[player].clear();
+        }
+        for (int regionID = 0; regionID <= this.adjacency.getMaxRegionID(); regionID++) {
+            if (this.adjacency.hasRegion(regionID)) {
+                updateCounts(regionID, owners[regionID], 1);
+            }
+        }
+    }
+
+    /**
+     * Updates visibility after a change of region owner
+     */
+    public void ownerChanged(int regionID, int previousOwner, int newOwner) {
+        updateCounts(regionID, previousOwner, -1);
+        updateCounts(regionID, newOwner, 1);
+    }
+
+    /**
+     * @return : true if the region is visible by the player. Regions not on the map and
+     *           players not tracked are never visible
+     */
+    public boolean isVisible(int player, int regionID) {
+        if (player < 0 || player >= this.ownedNearbyCount.length || !this.adjacency.hasRegion(regionID)) {
+            return false;
+        }
+        return this.ownedNearbyCount[player][regionID] > 0;
+    }
+
+    /**
+     * @return : the IDs of the regions owned by the player. The set is updated along with the owners,
+     *           and must not be changed
+     */
+    public BitSet getOwnedRegions(int player) {
+        return this.ownedRegions[player];
+    }
+
+    /**
+     * @return : the IDs of the regions visible by the player (its own regions and their neighbours).
+     *           The set is updated along with the owners, and must not be changed
+     */
+    public BitSet getVisibleRegions(int player) {
+        return this.visibleRegions[player];
+    }
+
+    private void updateCounts(int regionID, int owner, int delta) {
+        if (owner < 0 || owner >= this.ownedNearbyCount.length) {
+            return;  // neutral
+        }
+        int[] counts = this.ownedNearbyCount[owner];
+        BitSet visible = this.visibleRegions[owner];
+        this.ownedRegions[owner].set(regionID, delta > 0);
+        counts[regionID] += delta;
+        visible.set(regionID, counts[regionID] > 0);
+        for (int neighborID : this.adjacency.getNeighbors(regionID)) {
+            counts[neighborID] += delta;
+            visible.set(neighborID, counts[neighborID] > 0);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.theaigames.game.warlight2.map;
+
+import java.util.BitSet;
+import java.util.function.Consumer;
+
+/**
+ * A read-only view of the map as visible by one player.
+ *
+ * No regions are copied: the view is backed by the live map plus the sets of regions for which the
+ * player can see armies and owners. These sets are the ones a VisibilityTracker keeps up to date
+ * while the owners change, so the fog is never recomputed; update() only tells the view which
+ * tracker to follow (once per turn, as the game state behind the map may be replaced).
+ *
+ * Note: while the moves of a round are executed, the tracker of the game state is ahead of the
+ *       live map, which is only updated at the end of the round.
+ */
+public class VisibleMapView
+{
+    private final Map map;
+    private final Settings.FogLevel fogLevel;
+
+    private final BitSet allRegions;
+
+    private BitSet armiesVisibleRegions;
+    private BitSet ownerVisibleRegions;  // note: always a superset of armiesVisibleRegions
+
+    public VisibleMapView(Map map, Settings settings) {
+        this.map = map;
+        this.fogLevel = settings.getFogLevel();
+
+        this.allRegions = new BitSet();
+        map.getRegionIDs().forEach(regionID -> this.allRegions.set(regionID));
+
+        // nothing is owned until the first update()
+        setVisibleRegions(new BitSet(), new BitSet());
+    }
+
+    /**
+     * Makes the view follow the owners as kept by the given tracker (e.g. the one of the game state,
+     * see GameState.getVisibility()); takes constant time
+     *
+     * @param player : the index of the player in the tracker
+     */
+    public void update(VisibilityTracker visibility, int player) {
+        setVisibleRegions(visibility.getOwnedRegions(player), visibility.getVisibleRegions(player));
+    }
+
+    /**
+     * @param nearbyRegions : owned regions and their neighbours
+     */
+    private void setVisibleRegions(BitSet ownedRegions, BitSet nearbyRegions) {
+        switch(this.fogLevel) {
+        case NO_FOG:
+            this.armiesVisibleRegions = this.allRegions;
+            this.ownerVisibleRegions = this.allRegions;
+            break;
+        case EXTREME_FOG:
+            this.armiesVisibleRegions = ownedRegions;   // only see armies for own territories
+            this.ownerVisibleRegions = ownedRegions;    // only see owner for own territories
+            break;
+        case HEAVY_FOG:
+            this.armiesVisibleRegions = ownedRegions;   // only see armies for own territories
+            this.ownerVisibleRegions = nearbyRegions;   // see owners for all neighbours
+            break;
+        case LIGHT_FOG:
+            this.armiesVisibleRegions = nearbyRegions;  // see armies for own and neighbours
+            this.ownerVisibleRegions = this.allRegions; // see owner for all regions
+            break;
+        case NORMAL_FOG:
+        default:  // default to NORMAL_FOG for all unsupported fogs
+            this.armiesVisibleRegions = nearbyRegions;  // see armies for own and neighbours
+            this.ownerVisibleRegions = nearbyRegions;   // see owner for own and neighbours
+        }
+    }
+
+    /**
+     * @return : the underlying (live, non-fogged) map
+     */
+    public Map getMap() {
+        return this.map;
+    }
+
+    /**
+     * @return : true if the region is fogged, i.e. at least its armies are not visible
+     */
+    public boolean isFogged(Region region) {
+        return !this.armiesVisibleRegions.get(region.getId());
+    }
+
+    /**
+     * @return : true if the owner of the region is not visible
+     */
+    public boolean isOwnerFogged(Region region) {
+        return !this.ownerVisibleRegions.get(region.getId());
+    }
+
+    /**
+     * @return : the number of armies on the region, or Region.ARMIES_FOGGED if not visible
+     */
+    public int getArmies(Region region) {
+        return isFogged(region) ? Region.ARMIES_FOGGED : region.getArmies();
+    }
+
+    /**
+     * @return : the name of the owner of the region, or Region.OWNER_FOG if not visible
+     */
+    public String getOwnerName(Region region) {
+        return isOwnerFogged(region) ? Region.OWNER_FOG : region.getOwnerName();
+    }
+
+    /**
+     * Calls the action for all non-fogged regions, in the order of region IDs
+     */
+    public void forEachVisibleRegion(Consumer<Region> action) {
+        for (int regionID = this.armiesVisibleRegions.nextSetBit(0); regionID >= 0;
+                regionID = this.armiesVisibleRegions.nextSetBit(regionID + 1)) {
+            action.accept(this.map.getRegion(regionID));
+        }
+    }
+}
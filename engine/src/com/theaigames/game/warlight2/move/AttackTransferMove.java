@@ -69,6 +69,36 @@ public class AttackTransferMove extends Move {
 		return armies;
 	}
 
+	@Override
+	protected String describeIllegalReason(IllegalMoveReason reason) {
+		switch(reason) {
+			case NON_EXISTING_FROM_REGION:
+				return " attack/transfer  from non-existing region " + fromRegion;
+			case NON_EXISTING_TO_REGION:
+				return " attack/transfer  to non-existing region " + toRegion;
+			case NON_EXISTING_PLAYER:
+				return " attack/transfer  for non-existing player " + getPlayerName();
+			case LESS_THAN_ONE_ARMY:
+				return " attack/transfer cannot use less than 1 army";
+			case NOT_A_NEIGHBOR:
+				return toRegion + " attack/transfer not a neighbor";
+			case NOT_OWNED:
+				return fromRegion + " attack/transfer not owned";
+			case TRANSFER_FROM_ONE_ARMY:
+				return fromRegion + " transfer only has 1 army";
+			case ATTACK_FROM_ONE_ARMY:
+				return fromRegion + " attack only has 1 army";
+			case ALL_ARMIES_USED:
+				return fromRegion + " attack/transfer has used all available armies";
+			case ALREADY_MOVED:
+				return fromRegion + " attack/transfer has already attacked/transfered to this region";
+			case TAKEN_THIS_ROUND:
+				return fromRegion + " attack/transfer was taken this round";
+			default:
+				return fromRegion + " attack/transfer " + reason;
+		}
+	}
+
 	/**
      * TODO: this method is used for communicating move value to the bots,
      *       it i sbetter to decouple implementation of this class from communication protocol
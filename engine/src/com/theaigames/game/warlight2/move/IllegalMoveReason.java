@@ -0,0 +1,57 @@
+// Copyright 2015 theaigames.com (developers@theaigames.com)
+
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+
+//        http://www.apache.org/licenses/LICENSE-2.0
+
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+//    For the full copyright and license information, please view the LICENSE
+//    file that was distributed with this source code.
+
+package com.theaigames.game.warlight2.move;
+
+/**
+ * IllegalMoveReason enum
+ *
+ * All the reasons a move can be found illegal for. Only the reason is stored with a move,
+ * a human readable description is only built when needed (see Move.getIllegalDescription())
+ */
+
+public enum IllegalMoveReason {
+	NON_EXISTING_REGION,	  // deployment to a region not on the map
+	NON_EXISTING_FROM_REGION,
+	NON_EXISTING_TO_REGION,
+	NON_EXISTING_PLAYER,
+	LESS_THAN_ONE_ARMY,
+	NO_ARMIES_LEFT,		   // deployment when all armies are already deployed
+	NOT_OWNED,				// deployment to / move from a region not owned by the player
+	NOT_A_NEIGHBOR,
+	TRANSFER_FROM_ONE_ARMY,   // transfer from a region which only has 1 army left
+	ATTACK_FROM_ONE_ARMY,	 // attack from a region which only has 1 army left
+	ALL_ARMIES_USED,		  // all armies present at the start of the turn have already moved
+	ALREADY_MOVED,			// there already was an attack/transfer between the same regions this turn
+	TAKEN_THIS_ROUND;		 // the region to move from was taken by the opponent this turn
+
+	private static final IllegalMoveReason[] VALUES = values();
+
+	/**
+	 * @return : a compact non-zero code for this reason (0 is used for legal moves)
+	 */
+	public int getCode() {
+		return ordinal() + 1;
+	}
+
+	/**
+	 * @return : the reason with the given code, or null for code 0 (legal move)
+	 */
+	public static IllegalMoveReason fromCode(int code) {
+		return (code == 0) ? null : VALUES[code - 1];
+	}
+}
@@ -28,7 +28,7 @@ package com.theaigames.game.warlight2.move;
 public abstract class Move {
 
 	private String playerName;  // name of the player that did this move
-	private String illegalMove; // the value of the error message if move is illegal (including ""), or null if move is legal
+	private IllegalMoveReason illegalReason; // the reason this move is illegal, or null if move is legal
 
 	/**
 	 * @param playerName : Sets the name of the Player that this Move belongs to
@@ -38,10 +38,10 @@ public abstract class Move {
 	}
 
 	/**
-	 * @param problemDescription : error message of this move, can be null/blank
+	 * @param reason : the reason this move is illegal
 	 */
-	public void markAsIllegal(String problemDescription) {
-		this.illegalMove = (problemDescription == null) ? "" : problemDescription;
+	public void markAsIllegal(IllegalMoveReason reason) {
+		this.illegalReason = reason;
 	}
 
 	/**
@@ -52,15 +52,27 @@ public abstract class Move {
 	}
 
 	public boolean isLegalMove() {
-	    return illegalMove == null;
+	    return illegalReason == null;
+	}
+
+	/**
+	 * @return : The reason this Move is illegal, or null if move is legal
+	 */
+	public IllegalMoveReason getIllegalReason() {
+		return illegalReason;
 	}
 
 	/**
 	 * @return : The error message of this Move, or null if move is legal
 	 */
 	public String getIllegalDescription() {
-		return illegalMove;
+		return (illegalReason == null) ? null : describeIllegalReason(illegalReason);
 	}
 
+	/**
+	 * @return : a human readable error message for the given reason, as applied to this Move
+	 */
+	protected abstract String describeIllegalReason(IllegalMoveReason reason);
+
 	public abstract String getString();
 }
@@ -0,0 +1,216 @@
+// Copyright 2015 theaigames.com (developers@theaigames.com)
+
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+
+//        http://www.apache.org/licenses/LICENSE-2.0
+
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+//    For the full copyright and license information, please view the LICENSE
+//    file that was distributed with this source code.
+
+package com.theaigames.game.warlight2.move;
+
+import java.util.Arrays;
+
+/**
+ * MoveBuffer class
+ *
+ * A compact representation of a list of moves: each move is packed into a few consecutive
+ * int slots (player index, type, regions, armies and status), so that no objects are allocated
+ * per move. Intended for code that processes a lot of moves (e.g. simulations), moves can be
+ * converted from and to the Move classes used by the communication protocol.
+ *
+ * Players are identified by their index in the game (e.g. 0 for player1, 1 for player2).
+ */
+
+public class MoveBuffer {
+
+	public static final int TYPE_PLACE_ARMIES = 0;
+	public static final int TYPE_ATTACK_TRANSFER = 1;
+
+	private static final int SLOT_PLAYER = 0;
+	private static final int SLOT_TYPE = 1;
+	private static final int SLOT_FROM_REGION = 2;  // the region to deploy to for place armies moves
+	private static final int SLOT_TO_REGION = 3;    // unused for place armies moves
+	private static final int SLOT_ARMIES = 4;
+	private static final int SLOT_STATUS = 5;       // 0 for legal moves, otherwise IllegalMoveReason code
+	private static final int SLOTS_PER_MOVE = 6;
+
+	private int[] data;
+	private int size;
+
+	public MoveBuffer(int initialCapacity) {
+		this.data = new int[Math.max(1, initialCapacity) * SLOTS_PER_MOVE];
+		this.size = 0;
+	}
+
+	/**
+	 * @return : index of the added move
+	 */
+	public int addPlaceArmies(int player, int region, int armies) {
+		return add(player, TYPE_PLACE_ARMIES, region, 0, armies);
+	}
+
+	/**
+	 * @return : index of the added move
+	 */
+	public int addAttackTransfer(int player, int fromRegion, int toRegion, int armies) {
+		return add(player, TYPE_ATTACK_TRANSFER, fromRegion, toRegion, armies);
+	}
+
+	/**
+	 * Adds a copy of the given move, including its legality status
+	 *
+	 * @param player : index of the player who made the move
+	 * @return : index of the added move
+	 */
+	public int add(Move move, int player) {
+		int index;
+		if (move instanceof PlaceArmiesMove) {
+			PlaceArmiesMove plm = (PlaceArmiesMove) move;
+			index = addPlaceArmies(player, plm.getRegion(), plm.getArmies());
+		} else {
+			AttackTransferMove atm = (AttackTransferMove) move;
+			index = addAttackTransfer(player, atm.getFromRegion(), atm.getToRegion(), atm.getArmies());
+		}
+		if (!move.isLegalMove()) {
+			markAsIllegal(index, move.getIllegalReason());
+		}
+		return index;
+	}
+
+	private int add(int player, int type, int fromRegion, int toRegion, int armies) {
+		int offset = this.size * SLOTS_PER_MOVE;
+		if (offset + SLOTS_PER_MOVE > this.data.length) {
+			this.data = Arrays.copyOf(this.data, this.data.length * 2);
+		}
+		this.data[offset + SLOT_PLAYER] = player;
+		this.data[offset + SLOT_TYPE] = type;
+		this.data[offset + SLOT_FROM_REGION] = fromRegion;
+		this.data[offset + SLOT_TO_REGION] = toRegion;
+		this.data[offset + SLOT_ARMIES] = armies;
+		this.data[offset + SLOT_STATUS] = 0;
+		return this.size++;
+	}
+
+	/**
+	 * Converts a move back to a Move object (e.g. to be sent to a bot)
+	 *
+	 * @param playerNames : names of the players, by player index
+	 */
+	public Move toMove(int index, String[] playerNames) {
+		String playerName = playerNames[getPlayer(index)];
+		Move move = (getType(index) == TYPE_PLACE_ARMIES)
+				? new PlaceArmiesMove(playerName, getRegion(index), getArmies(index))
+				: new AttackTransferMove(playerName, getFromRegion(index), getToRegion(index), getArmies(index));
+		if (!isLegalMove(index)) {
+			move.markAsIllegal(getIllegalReason(index));
+		}
+		return move;
+	}
+
+	/**
+	 * Copies the result of executing a move (its possibly reduced number of armies, and its legality)
+	 * to the Move object it was created from
+	 */
+	public void copyResultTo(int index, Move move) {
+		if (move instanceof PlaceArmiesMove) {
+			((PlaceArmiesMove) move).setArmies(getArmies(index));
+		} else {
+			((AttackTransferMove) move).setArmies(getArmies(index));
+		}
+		if (!isLegalMove(index)) {
+			move.markAsIllegal(getIllegalReason(index));
+		}
+	}
+
+	/**
+	 * Empties the buffer, keeping the allocated memory for re-use
+	 */
+	public void clear() {
+		this.size = 0;
+	}
+
+	/**
+	 * Replaces the moves of this buffer with a copy of the moves of the other buffer
+	 */
+	public void copyFrom(MoveBuffer other) {
+		int length = other.size * SLOTS_PER_MOVE;
+		if (length > this.data.length) {
+			this.data = new int[other.data.length];
+		}
+		System.arraycopy(other.data, 0, this.data, 0, length);
+		this.size = other.size;
+	}
+
+	/**
+	 * @return : true if both buffers have the same moves (including their legality status) in the same order
+	 */
+	public boolean contentEquals(MoveBuffer other) {
+		return Arrays.equals(this.data, 0, this.size * SLOTS_PER_MOVE, other.data, 0, other.size * SLOTS_PER_MOVE);
+	}
+
+	public int size() {
+		return this.size;
+	}
+
+	public int getPlayer(int index) {
+		return get(index, SLOT_PLAYER);
+	}
+
+	public int getType(int index) {
+		return get(index, SLOT_TYPE);
+	}
+
+	/**
+	 * @return : the region armies are placed on (for place armies moves only)
+	 */
+	public int getRegion(int index) {
+		return get(index, SLOT_FROM_REGION);
+	}
+
+	public int getFromRegion(int index) {
+		return get(index, SLOT_FROM_REGION);
+	}
+
+	public int getToRegion(int index) {
+		return get(index, SLOT_TO_REGION);
+	}
+
+	public int getArmies(int index) {
+		return get(index, SLOT_ARMIES);
+	}
+
+	public void setArmies(int index, int armies) {
+		this.data[index * SLOTS_PER_MOVE + SLOT_ARMIES] = armies;
+	}
+
+	public boolean isLegalMove(int index) {
+		return get(index, SLOT_STATUS) == 0;
+	}
+
+	/**
+	 * @return : the reason the move is illegal, or null if the move is legal
+	 */
+	public IllegalMoveReason getIllegalReason(int index) {
+		return IllegalMoveReason.fromCode(get(index, SLOT_STATUS));
+	}
+
+	public void markAsIllegal(int index, IllegalMoveReason reason) {
+		this.data[index * SLOTS_PER_MOVE + SLOT_STATUS] = reason.getCode();
+	}
+
+	private int get(int index, int slot) {
+		if (index < 0 || index >= this.size) {
+			throw new IndexOutOfBoundsException("Move index " + index + " is out of range, size " + this.size);
+		}
+		return this.data[index * SLOTS_PER_MOVE + slot];
+	}
+}
@@ -11,66 +11,81 @@
 //    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
 //    See the License for the specific language governing permissions and
 //    limitations under the License.
-//	
+//
 //    For the full copyright and license information, please view the LICENSE
 //    file that was distributed with this source code.
 
 package com.theaigames.game.warlight2.move;
-import java.util.ArrayList;
 
-import com.theaigames.game.warlight2.Player;
+import java.util.Arrays;
+
+import com.theaigames.game.warlight2.SplitMix64;
+import com.theaigames.game.warlight2.map.Settings;
 
 /**
  * MoveQueue class
  * 
- * Stores all moves returned by the bots for one round and determines
- * the ordering in which they are executed
+ * Determines the ordering in which the attack/transfer moves of one round are executed, according
+ * to the MoveOrder setting: in cycles of one move per player (CYCLE), or by drawing the player of
+ * every next move (RANDOM). The moves of each player are executed in the order they were given.
+ * 
+ * Moves are identified by their index (e.g. in a MoveBuffer) and kept in one list per player,
+ * consumed via a cursor, so the queue (and all its lists) can be re-used for every round after
+ * a clear().
  * 
  * @author Jim van Eeden <jim@starapple.nl>
  */
 
 public class MoveQueue {
 	
-	public ArrayList<PlaceArmiesMove> placeArmiesMoves;
-	public ArrayList<AttackTransferMove> attackTransferMovesP1;
-	public ArrayList<AttackTransferMove> attackTransferMovesP2;
-	private Player player1, player2;
+	private int numPlayers;
+	private Settings.MoveOrder moveOrder;
+	private int[][] attackTransferMoves;   // one list of move indices per player
+	private int[] numAttackTransferMoves;  // number of moves in each player's list
+	private int[] nextAttackTransferMove;  // cursor into each player's list
+	private int remainingAttackTransferMoves;
+	private int[] cycleOrder; // order of players in the current cycle of moves (one move per player)
+	private SplitMix64 moveOrderRnd;
 	
-	public MoveQueue(Player player1, Player player2)
+	public MoveQueue(int numPlayers, Settings.MoveOrder moveOrder)
 	{
-		this.placeArmiesMoves = new ArrayList<PlaceArmiesMove>();
-		this.attackTransferMovesP1 = new ArrayList<AttackTransferMove>();
-		this.attackTransferMovesP2 = new ArrayList<AttackTransferMove>();
-		this.player1 = player1;
-		this.player2 = player2;
+		this.numPlayers = numPlayers;
+		this.moveOrder = moveOrder;
+		this.attackTransferMoves = new int[numPlayers][16];
+		this.numAttackTransferMoves = new int[numPlayers];
+		this.nextAttackTransferMove = new int[numPlayers];
+		this.remainingAttackTransferMoves = 0;
+		this.cycleOrder = new int[numPlayers];
+		for (int i = 0; i < numPlayers; i++)
+			this.cycleOrder[i] = i;
 	}
-	
+
 	/**
-	 * @param move : stores move in the correct list
+	 * @param playerIndex : the player who made the move
+	 * @param moveIndex   : stores move in the list of its player's attacks/transfers
 	 */
-	public void addMove(Move move)
+	public void addAttackTransferMove(int playerIndex, int moveIndex)
 	{
-		try { //add PlaceArmiesMove
-			PlaceArmiesMove plm = (PlaceArmiesMove) move;
-			placeArmiesMoves.add(plm);
-		}
-		catch(Exception e) { //add AttackTransferMove
-			AttackTransferMove atm = (AttackTransferMove) move;
-			if(player1.getName().equals(move.getPlayerName()))
-				attackTransferMovesP1.add(atm);
-			else if(player2.getName().equals(move.getPlayerName()))
-				attackTransferMovesP2.add(atm);
-		}
+		int[] moves = attackTransferMoves[playerIndex];
+		if (numAttackTransferMoves[playerIndex] == moves.length)
+			attackTransferMoves[playerIndex] = moves = Arrays.copyOf(moves, moves.length * 2);
+		moves[numAttackTransferMoves[playerIndex]++] = moveIndex;
+		remainingAttackTransferMoves++;
 	}
 
 	/**
 	 * Empties the move queue
+	 * 
+	 * @param moveOrderRnd : the random number generator used to order the moves added next
 	 */
-	public void clear()
+	public void clear(SplitMix64 moveOrderRnd)
 	{
-		placeArmiesMoves.clear();
-		attackTransferMovesP1.clear();
-		attackTransferMovesP2.clear();
+		for (int i = 0; i < numPlayers; i++) {
+			numAttackTransferMoves[i] = 0;
+			nextAttackTransferMove[i] = 0;
+		}
+		remainingAttackTransferMoves = 0;
+		this.moveOrderRnd = moveOrderRnd;
 	}
 
 	/**
@@ -78,63 +93,107 @@ public class MoveQueue {
 	 */
 	public boolean hasNextAttackTransferMove()
 	{
-		if(attackTransferMovesP1.isEmpty() && attackTransferMovesP2.isEmpty())
-			return false;
-		return true;
+		return remainingAttackTransferMoves > 0;
 	}
 
 	/**
-	 * Here is determined which player can do the next attackTransfer move. Player to move first each move is chosen random.
-	 * Makes sure that if a player has an illegal move, the next legal move is selected.
+	 * Here is determined which player can do the next attackTransfer move. With the CYCLE move order
+	 * moves are done in cycles of one move per player, the order of players within each cycle is chosen
+	 * random, and if a player has an illegal move, the next move of the same player is selected. With
+	 * the RANDOM move order the player of each move is drawn, weighted by the number of moves each player
+	 * has left (so all orders of the moves are equally likely), and illegal moves are simply skipped.
 	 * @param moveNr : the number of this attackTransfer move
-	 * @param previousMovePlayer : the player name who last executed a move
+	 * @param previousMovePlayer : index of the player who last executed a move, -1 if none
 	 * @param previousWasIllegal : true if the previous move was illegal
-	 * @return : the next attackTransfer move from the queue
+	 * @return : the index of the next attackTransfer move from the queue, -1 if there are none left
 	 */
-	public AttackTransferMove getNextAttackTransferMove(int moveNr, String previousMovePlayer, Boolean previousWasIllegal)
+	public int getNextAttackTransferMove(int moveNr, int previousMovePlayer, boolean previousWasIllegal)
 	{
 		if(!hasNextAttackTransferMove()) //shouldn't ever happen
 		{
 			System.err.println("No more AttackTransferMoves left in MoveQueue");
-			return null;
+			return -1;
 		}
 
+		if(moveOrder == Settings.MoveOrder.RANDOM)
+		{
+			return getMove(drawPlayer());
+		}
 		if(!previousWasIllegal)
 		{
-			if(moveNr % 2 == 1 || previousMovePlayer.equals("")) //first move of the two
+			int positionInCycle = (moveNr - 1) % numPlayers;
+			if(positionInCycle == 0 || previousMovePlayer < 0) //first move of the cycle
 			{
-				double rand = Math.random();
-				return getMove(rand < 0.5);
+				shuffleCycleOrder();
+				return getMove(cycleOrder[0]);
 			}
-			else //it's the other player's turn
+			else //it's the next player's turn
 			{
-				return getMove(previousMovePlayer.equals(player2.getName()));
+				return getMove(cycleOrder[positionInCycle]);
 			}
 		}
 		else //return another move by the same player
 		{
-			return getMove(previousMovePlayer.equals(player1.getName()));
+			return getMove(previousMovePlayer);
 		}
 	}
 
 	/**
-	 * @param conditionForPlayer1 : true if the next move should be player1's
-	 * @return the next attackTransfer move to be executed
+	 * Randomly re-orders players for the next cycle of moves
+	 * (for two players: player1 moves first if the random number drawn is below 0.5)
 	 */
-	private AttackTransferMove getMove(Boolean conditionForPlayer1)
+	private void shuffleCycleOrder()
 	{
-		AttackTransferMove move;
-		if(!attackTransferMovesP1.isEmpty() && (conditionForPlayer1 || attackTransferMovesP2.isEmpty())) //get player1's move
-		{
-			move = attackTransferMovesP1.get(0);
-			attackTransferMovesP1.remove(0);
-			return move;
+		for (int i = 0; i < numPlayers; i++)
+			cycleOrder[i] = i;
+		for (int i = 0; i < numPlayers - 1; i++) {
+			int j = i + (int) (moveOrderRnd.nextDouble() * (numPlayers - i));
+			int swap = cycleOrder[i];
+			cycleOrder[i] = cycleOrder[j];
+			cycleOrder[j] = swap;
 		}
-		else // get player2's move
-		{
-			move = attackTransferMovesP2.get(0);
-			attackTransferMovesP2.remove(0);
-			return move;
+	}
+
+	/**
+	 * @return : a random player with moves left, each player weighted by the number of moves it has left
+	 */
+	private int drawPlayer()
+	{
+		int move = moveOrderRnd.nextInt(remainingAttackTransferMoves);
+		for (int i = 0; i < numPlayers; i++) {
+			int movesLeft = numAttackTransferMoves[i] - nextAttackTransferMove[i];
+			if (move < movesLeft)
+				return i;
+			move -= movesLeft;
 		}
+		throw new IllegalStateException("The number of remaining moves is not consistent");
+	}
+
+	/**
+	 * @param preferredPlayer : index of the player whose move should be next
+	 * @return the next attackTransfer move to be executed: the preferred player's, or if that player has no moves
+	 *         left, a move of the first player following the preferred one in the cycle order who still has moves
+	 */
+	private int getMove(int preferredPlayer)
+	{
+		int playerIndex = preferredPlayer;
+		if (preferredPlayer < 0 || !hasMovesLeft(preferredPlayer)) {
+			int cyclePosition = 0;
+			for (int i = 0; i < numPlayers; i++)
+				if (cycleOrder[i] == preferredPlayer)
+					cyclePosition = i;
+			for (int i = 1; i <= numPlayers; i++) {
+				playerIndex = cycleOrder[(cyclePosition + i) % numPlayers];
+				if (hasMovesLeft(playerIndex))
+					break;
+			}
+		}
+		remainingAttackTransferMoves--;
+		return attackTransferMoves[playerIndex][nextAttackTransferMove[playerIndex]++];
+	}
+
+	private boolean hasMovesLeft(int playerIndex)
+	{
+		return nextAttackTransferMove[playerIndex] < numAttackTransferMoves[playerIndex];
 	}
 }
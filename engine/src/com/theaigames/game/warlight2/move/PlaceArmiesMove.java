@@ -59,6 +59,24 @@ public class PlaceArmiesMove extends Move {
 		return armies;
 	}
 
+	@Override
+	protected String describeIllegalReason(IllegalMoveReason reason) {
+		switch(reason) {
+			case NON_EXISTING_REGION:
+				return " place-armies for non-existing region " + region;
+			case NON_EXISTING_PLAYER:
+				return " place-armies for non-existing player " + getPlayerName();
+			case LESS_THAN_ONE_ARMY:
+				return " place-armies cannot place less than 1 army";
+			case NO_ARMIES_LEFT:
+				return " place-armies no armies left to place";
+			case NOT_OWNED:
+				return region + " place-armies  not owned";
+			default:
+				return " place-armies " + reason;
+		}
+	}
+
 	/**
 	 * TODO: this method is used for communicating move value to the bots,
 	 *       it i sbetter to decouple implementation of this class from communication protocol